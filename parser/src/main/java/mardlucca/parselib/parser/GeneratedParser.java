@@ -0,0 +1,361 @@
+/*
+ * File: GeneratedParser.java
+ *
+ * Copyright 2020 Marcio D. Lucca
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mardlucca.parselib.parser;
+
+import mardlucca.parselib.tokenizer.SyntacticContext;
+import mardlucca.parselib.tokenizer.Token;
+import mardlucca.parselib.tokenizer.Tokenizer;
+import mardlucca.parselib.tokenizer.TokenizerFactory;
+import mardlucca.parselib.tokenizer.UnrecognizedCharacterSequenceException;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.lang.Character.isUpperCase;
+
+/**
+ * Base class of the parsers generated by {@link LRParsingTableGenerator}.
+ * The generated class holds its parsing table as constants, in the packed
+ * form of {@link LRParsingTableLoader}, which are expanded into arrays once,
+ * when the class is initialized. Terminals are the constants of an enum,
+ * matched against the columns of the table by their string representation.
+ */
+public abstract class GeneratedParser<T extends Enum<T>> implements Parser {
+    // action opcodes, in the lower bits of the table entries
+    private static final int SHIFT = 1;
+
+    private static final int REDUCE = 2;
+
+    private static final int ACCEPT = 3;
+
+    private static final int ERROR = 4;
+
+    private static final int GOTO = 5;
+
+    private static final int OPCODE_BITS = 3;
+
+    private static final int OPCODE_MASK = (1 << OPCODE_BITS) - 1;
+
+    protected static final String SYNTAX_ERROR = "Syntax error";
+
+    private Grammar grammar;
+
+    private TokenizerFactory<T> tokenizerFactory;
+
+    private Table<T> table;
+
+    private int[] lengths;
+
+    private int[] leftHandSides;
+
+    /**
+     * Creates a parser for the given grammar, which must be the one the
+     * table was generated from, e.g. with reduce listeners added to it.
+     */
+    protected GeneratedParser(
+            Grammar aInGrammar,
+            TokenizerFactory<T> aInTokenizerFactory,
+            Table<T> aInTable) {
+        grammar = aInGrammar;
+        tokenizerFactory = aInTokenizerFactory;
+        table = aInTable;
+
+        lengths = new int[aInGrammar.getProductionCount()];
+        leftHandSides = new int[lengths.length];
+        for (int i = 0; i < lengths.length; i++) {
+            Grammar.Production lProduction = aInGrammar.getProduction(i);
+            lengths[i] = lProduction.getRightHandSide().length;
+            leftHandSides[i] = aInTable.column(
+                    lProduction.getLeftHandSide());
+        }
+    }
+
+    @Override
+    public ParseResult parse(Reader aInReader)
+            throws IOException, UnrecognizedCharacterSequenceException {
+        Tokenizer<T> lTokenizer = tokenizerFactory.newTokenizer(aInReader);
+        try {
+            Invocation lInvocation = new Invocation();
+            parse(lTokenizer, lInvocation);
+            return lInvocation;
+        }
+        finally {
+            LRParsingTable.close(lTokenizer);
+        }
+    }
+
+    /**
+     * Parses the tokens of the given tokenizer, recording the value or the
+     * errors found in the invocation.
+     */
+    protected void parse(Tokenizer<T> aInTokenizer, Invocation aInInvocation)
+            throws IOException, UnrecognizedCharacterSequenceException {
+        int lState = 0;
+        Token<T, ?> lToken = aInTokenizer.nextToken(context(lState));
+        while (true) {
+            int lAction = table.actions[lState][column(lToken)];
+            int lArgument = lAction >>> OPCODE_BITS;
+            switch (lAction & OPCODE_MASK) {
+                case SHIFT:
+                    aInInvocation.push(lState, lToken);
+                    lState = lArgument;
+                    lToken = aInTokenizer.nextToken(context(lState));
+                    break;
+                case REDUCE:
+                    lState = reduce(lState, lArgument, aInInvocation);
+                    if (lState < 0) {
+                        return;
+                    }
+                    lState = goTo(lState, lArgument);
+                    if (lState < 0) {
+                        aInInvocation.error(SYNTAX_ERROR);
+                        return;
+                    }
+                    break;
+                case ACCEPT:
+                    aInInvocation.accept();
+                    return;
+                case ERROR:
+                    aInInvocation.error(table.messages[lArgument]);
+                    return;
+                default:
+                    aInInvocation.error(SYNTAX_ERROR);
+                    return;
+            }
+        }
+    }
+
+    /**
+     * The column of the table for the id of the given token. Ids that are
+     * not in the table get a column with no actions.
+     */
+    protected final int column(Token<T, ?> aInToken) {
+        return table.columns[aInToken.getId().ordinal()];
+    }
+
+    /**
+     * The syntactic context passed to the tokenizer in the given state,
+     * which expects the terminals the state has actions for.
+     */
+    protected final SyntacticContext<T> context(int aInState) {
+        return table.contexts.get(aInState);
+    }
+
+    /**
+     * Reduces the given production, popping its symbols from the stack and
+     * pushing the value returned by its reduce listener. Returns the state
+     * uncovered by the pop, from which the left hand side of the production
+     * is to be gone to, or -1 if the listener failed, in which case its
+     * error is recorded.
+     */
+    protected final int reduce(
+            int aInState, int aInProduction, Invocation aInInvocation) {
+        Grammar.Production lProduction = grammar.getProduction(aInProduction);
+        Object[] lValues = new Object[lengths[aInProduction]];
+        int lState = aInInvocation.pop(aInState, lValues);
+        try {
+            aInInvocation.push(lState,
+                    lProduction.onReduce(lProduction, lValues));
+            return lState;
+        }
+        catch (ParsingException pe) {
+            aInInvocation.error(pe.getMessage());
+        }
+        return -1;
+    }
+
+    private int goTo(int aInState, int aInProduction) {
+        int lGoTo = table.actions[aInState][leftHandSides[aInProduction]];
+        return (lGoTo & OPCODE_MASK) == GOTO ? lGoTo >>> OPCODE_BITS : -1;
+    }
+
+    /**
+     * The parsing table of a generated parser, expanded from the constants
+     * of the generated class. Actions are kept in an array per state,
+     * indexed by column, with one more column than symbols for the terminals
+     * not found in the table.
+     */
+    protected static final class Table<T extends Enum<T>> {
+        private Map<String, Integer> symbols = new HashMap<>();
+
+        private Map<String, T> terminals = new HashMap<>();
+
+        private int[] columns;
+
+        private int[][] actions;
+
+        private String[] messages;
+
+        private List<SyntacticContext<T>> contexts = new ArrayList<>();
+
+        public Table(T[] aInTerminals, String[] aInSymbols,
+                     String[] aInMessages, String[] aInRows) {
+            for (int i = 0; i < aInSymbols.length; i++) {
+                symbols.put(aInSymbols[i], i);
+            }
+
+            columns = new int[aInTerminals.length];
+            Arrays.fill(columns, aInSymbols.length);
+            for (T lTerminal : aInTerminals) {
+                terminals.put(lTerminal.toString(), lTerminal);
+                Integer lColumn = symbols.get(lTerminal.toString());
+                if (lColumn != null) {
+                    columns[lTerminal.ordinal()] = lColumn;
+                }
+            }
+            for (String lSymbol : aInSymbols) {
+                if (!isUpperCase(lSymbol.charAt(0))) {
+                    terminal(lSymbol);
+                }
+            }
+
+            messages = aInMessages;
+            actions = new int[aInRows.length][aInSymbols.length + 1];
+            for (int lState = 0; lState < aInRows.length; lState++) {
+                String lRow = aInRows[lState];
+                for (int i = 0; i < lRow.length(); i += 3) {
+                    actions[lState][lRow.charAt(i)] =
+                            lRow.charAt(i + 2) << OPCODE_BITS
+                                    | opcode(lState, lRow.charAt(i + 1));
+                }
+                contexts.add(new Context(actions[lState]));
+            }
+        }
+
+        /**
+         * The terminal with the given string representation.
+         */
+        public T terminal(String aInSymbol) {
+            T lTerminal = terminals.get(aInSymbol);
+            if (lTerminal == null) {
+                throw new RuntimeException(
+                        "\"" + aInSymbol + "\" is not a valid symbol");
+            }
+            return lTerminal;
+        }
+
+        private int column(String aInSymbol) {
+            Integer lColumn = symbols.get(aInSymbol);
+            if (lColumn == null) {
+                throw new RuntimeException(
+                        "\"" + aInSymbol + "\" is not a valid symbol");
+            }
+            return lColumn;
+        }
+
+        private static int opcode(int aInState, char aInAction) {
+            switch (aInAction) {
+                case LRParsingTableLoader.SHIFT:
+                    return SHIFT;
+                case LRParsingTableLoader.REDUCE:
+                    return REDUCE;
+                case LRParsingTableLoader.ACCEPT:
+                    return ACCEPT;
+                case LRParsingTableLoader.ERROR:
+                    return ERROR;
+                case LRParsingTableLoader.GOTO:
+                    return GOTO;
+                default:
+                    throw new RuntimeException("Invalid action \"" +
+                            aInAction + "\" in row \"" + aInState + '"');
+            }
+        }
+
+        private class Context implements SyntacticContext<T> {
+            private int[] actions;
+
+            private Context(int[] aInActions) {
+                actions = aInActions;
+            }
+
+            @Override
+            public boolean isExpected(T aInTokenId) {
+                return actions[columns[aInTokenId.ordinal()]] != 0;
+            }
+        }
+    }
+
+    /**
+     * The stack and the result of a parse. Entries of the stack pair the
+     * value of a symbol with the state the parser was in before the symbol
+     * was pushed.
+     */
+    protected static final class Invocation implements ParseResult {
+        private int[] states = new int[16];
+
+        private Object[] values = new Object[16];
+
+        private int size;
+
+        private Object value;
+
+        private List<String> errors = new ArrayList<>();
+
+        public void push(int aInState, Object aInValue) {
+            if (size == states.length) {
+                states = Arrays.copyOf(states, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+            }
+            states[size] = aInState;
+            values[size++] = aInValue;
+        }
+
+        /**
+         * Pops as many entries as the given array holds into it, returning
+         * the state the parser goes back to, which is the given state if
+         * nothing is popped.
+         */
+        public int pop(int aInState, Object[] aInValues) {
+            int lState = aInState;
+            for (int i = aInValues.length - 1; i >= 0; i--) {
+                lState = states[--size];
+                aInValues[i] = values[size];
+                values[size] = null;
+            }
+            return lState;
+        }
+
+        /**
+         * Accepts the input, the value of the symbol on top of the stack
+         * becoming the value of the parse.
+         */
+        public void accept() {
+            value = values[--size];
+        }
+
+        public void error(String aInMessage) {
+            errors.add(aInMessage);
+        }
+
+        @Override
+        public Object getValue() {
+            return value;
+        }
+
+        @Override
+        public List<String> getErrors() {
+            return errors;
+        }
+    }
+}
@@ -43,6 +43,10 @@ public class Grammar {
         return productions.get(aInIndex);
     }
 
+    public int getProductionCount() {
+        return productions.size();
+    }
+
     public Production getProduction(String aInProductionString) {
         return productionsByString.get(aInProductionString);
     }
@@ -19,15 +19,30 @@
 package mardlucca.parselib.parser;
 
 import mardlucca.parselib.parser.Grammar.ReduceListener;
+import mardlucca.parselib.tokenizer.SyntacticContext;
 import mardlucca.parselib.tokenizer.Token;
 import mardlucca.parselib.tokenizer.Tokenizer;
 import mardlucca.parselib.tokenizer.TokenizerFactory;
 import mardlucca.parselib.tokenizer.UnrecognizedCharacterSequenceException;
 
 import java.io.IOException;
+import java.io.Reader;
 import java.util.*;
 
 public class LRParsingTable<T> {
+    // action opcodes
+    private static final int SHIFT = 0;
+
+    private static final int REDUCE = 1;
+
+    private static final int GOTO = 2;
+
+    private static final int CONDITIONAL = 3;
+
+    private static final int ACCEPT = 4;
+
+    private static final int ERROR = 5;
+
     private int stateSequence = 0;
 
     private List<State> states = new ArrayList<>();
@@ -55,26 +70,60 @@ public class LRParsingTable<T> {
         return aInReader -> {
             Tokenizer<T> lTokenizer =
                     aInTokenizerFactory.newTokenizer(aInReader);
-            ParseInvocation lInvocation = new ParseInvocation(
-                    states.get(0), lTokenizer);
-
-            lInvocation.currentToken = lTokenizer.nextToken(
-                    lInvocation.currentState);
-            Action lNextAction;
-            do {
-                lNextAction = lInvocation.nextAction();
-                if (lNextAction == null) {
-                    // no action found, so we're in error
-                    lNextAction = defaultErrorAction;
-                }
+            try {
+                return parse(new ParseInvocation(states.get(0), lTokenizer,
+                        new ArrayDeque<>(), new ArrayDeque<>()));
+            }
+            finally {
+                close(lTokenizer);
             }
-            while (lNextAction.execute(lInvocation));
-
-            return lInvocation;
         };
     }
 
-    public class State {
+    /**
+     * Creates a parser that keeps its tokenizer and stacks around, resetting
+     * them for every document parsed, which makes it cheaper than a parser
+     * created with {@link #buildParser(TokenizerFactory)} when parsing many
+     * small documents. Sessions are not thread safe.
+     */
+    public ParseSession newSession(TokenizerFactory<T> aInTokenizerFactory) {
+        return new ParseSession(aInTokenizerFactory);
+    }
+
+    private ParseInvocation parse(ParseInvocation aInInvocation)
+            throws IOException, UnrecognizedCharacterSequenceException {
+        aInInvocation.currentToken = aInInvocation.tokenizer.nextToken(
+                aInInvocation.currentState);
+        Action lNextAction;
+        do {
+            lNextAction = aInInvocation.nextAction();
+            if (lNextAction == null) {
+                // no action found, so we're in error
+                lNextAction = defaultErrorAction;
+            }
+        }
+        while (execute(lNextAction, aInInvocation));
+
+        return aInInvocation;
+    }
+
+    static void close(Tokenizer<?> aInTokenizer) throws IOException {
+        // e.g. pipelined tokenizers, which own a thread
+        if (!(aInTokenizer instanceof AutoCloseable)) {
+            return;
+        }
+        try {
+            ((AutoCloseable) aInTokenizer).close();
+        }
+        catch (IOException | RuntimeException e) {
+            throw e;
+        }
+        catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public class State implements SyntacticContext<T> {
         private int number;
         private Map<String, GotoAction> goTos = new HashMap<>();
         private Map<T, Action> actions = new HashMap<>();
@@ -142,21 +191,97 @@ public class LRParsingTable<T> {
         public boolean hasAction(T aInTerminal) {
             return actions.containsKey(aInTerminal);
         }
+
+        @Override
+        public boolean isExpected(T aInTokenId) {
+            return hasAction(aInTokenId);
+        }
+    }
+
+    /**
+     * Executes the given action, returning whether parsing should go on. The
+     * actions are dispatched on their opcode, rather than through a virtual
+     * method, which keeps this call site monomorphic no matter how many kinds
+     * of actions a table uses. For code specialized to a table, with a switch
+     * over its states, see {@link LRParsingTableGenerator}.
+     */
+    private boolean execute(Action aInAction, ParseInvocation aInInvocation)
+            throws IOException, UnrecognizedCharacterSequenceException {
+        switch (aInAction.opcode) {
+            case SHIFT: {
+                State lNextState = ((ShiftAction) aInAction).state();
+                aInInvocation.stateStack.push(aInInvocation.currentState);
+                aInInvocation.symbolStack.push(
+                        new Terminal<>(aInInvocation.currentToken));
+
+                aInInvocation.currentState = lNextState;
+                aInInvocation.currentToken =
+                        aInInvocation.tokenizer.nextToken(lNextState);
+                return true;
+            }
+            case REDUCE: {
+                ReduceAction lReduce = (ReduceAction) aInAction;
+                Object[] lValues = new Object[lReduce.numberOfSymbols];
+                for (int i = lReduce.numberOfSymbols - 1; i >= 0; i--) {
+                    aInInvocation.currentState =
+                            aInInvocation.stateStack.pop();
+                    lValues[i] = aInInvocation.symbolStack.pop().getValue();
+                }
+
+                try {
+                    aInInvocation.goTo = new NonTerminal(
+                            lReduce.production.getLeftHandSide(),
+                            lReduce.production.onReduce(
+                                    lReduce.production, lValues));
+
+                    return true;
+                }
+                catch (ParsingException pe) {
+                    aInInvocation.errors.add(pe.getMessage());
+                }
+                return false;
+            }
+            case GOTO: {
+                State lNextState = ((GotoAction) aInAction).state();
+                aInInvocation.stateStack.push(aInInvocation.currentState);
+                aInInvocation.symbolStack.push(aInInvocation.goTo);
+                aInInvocation.currentState = lNextState;
+                aInInvocation.goTo = null;
+                return true;
+            }
+            case CONDITIONAL: {
+                ConditionalAction lConditional = (ConditionalAction) aInAction;
+                Token<T, ?> lNextToken =
+                        aInInvocation.tokenizer.peekToken(
+                                aInInvocation.currentState);
+                return execute(
+                        Objects.equals(lConditional.nextToken,
+                                lNextToken.getId())
+                                ? lConditional.equalsAction
+                                : lConditional.notEqualsAction,
+                        aInInvocation);
+            }
+            case ACCEPT:
+                aInInvocation.value =
+                        aInInvocation.symbolStack.pop().getValue();
+                return false;
+            default:
+                aInInvocation.errors.add(((ErrorAction) aInAction).message);
+                return false;
+        }
     }
 
     private abstract class Action {
-        abstract boolean execute(ParseInvocation aInInvocation)
-            throws IOException, UnrecognizedCharacterSequenceException;
+        private final int opcode;
+
+        private Action(int aInOpcode) {
+            opcode = aInOpcode;
+        }
     }
 
     private class AcceptAction extends Action {
         private AcceptAction() {
-        }
-
-        @Override
-        public boolean execute(ParseInvocation aInInvocation) {
-            aInInvocation.value = aInInvocation.symbolStack.pop().getValue();
-            return false;
+            super(ACCEPT);
         }
     }
 
@@ -164,31 +289,28 @@ public class LRParsingTable<T> {
         private String message;
 
         private ErrorAction(String aInMessage) {
+            super(ERROR);
             message = aInMessage;
         }
-
-        @Override
-        public boolean execute(ParseInvocation aInInvocation) {
-            aInInvocation.errors.add(message);
-            return false;
-        }
     }
 
     private class GotoAction extends Action {
         private int state;
 
+        // resolved on first use, as the state may not exist yet when the
+        // action is created
+        private State target;
+
         private GotoAction(int aInState) {
+            super(GOTO);
             state = aInState;
         }
 
-        @Override
-        public boolean execute(ParseInvocation aInInvocation) {
-            State lNextState = states.get(state);
-            aInInvocation.stateStack.push(aInInvocation.currentState);
-            aInInvocation.symbolStack.push(aInInvocation.goTo);
-            aInInvocation.currentState = lNextState;
-            aInInvocation.goTo = null;
-            return true;
+        private State state() {
+            if (target == null) {
+                target = states.get(state);
+            }
+            return target;
         }
 
         @Override
@@ -200,23 +322,19 @@ public class LRParsingTable<T> {
     private class ShiftAction extends Action {
         private int state;
 
+        // see GotoAction
+        private State target;
+
         private ShiftAction(int aInState) {
+            super(SHIFT);
             state = aInState;
         }
 
-        @Override
-        public boolean execute(ParseInvocation aInInvocation)
-            throws IOException, UnrecognizedCharacterSequenceException {
-            State lNextState = states.get(state);
-            aInInvocation.stateStack.push(aInInvocation.currentState);
-            aInInvocation.symbolStack.push(
-                new Terminal<>(aInInvocation.currentToken));
-
-            aInInvocation.currentState = lNextState;
-            aInInvocation.currentToken =
-                    aInInvocation.tokenizer.nextToken(
-                            aInInvocation.currentState);
-            return true;
+        private State state() {
+            if (target == null) {
+                target = states.get(state);
+            }
+            return target;
         }
 
         @Override
@@ -232,31 +350,11 @@ public class LRParsingTable<T> {
 
         ReduceAction(
                 Grammar.Production aInProduction) {
+            super(REDUCE);
             production = aInProduction;
             numberOfSymbols = production.getRightHandSide().length;
         }
 
-        @Override
-        public boolean execute(ParseInvocation aInInvocation) {
-            Object[] lValues = new Object[numberOfSymbols];
-            for (int i = numberOfSymbols -1; i >= 0; i--) {
-                aInInvocation.currentState = aInInvocation.stateStack.pop();
-                lValues[i] = aInInvocation.symbolStack.pop().getValue();
-            }
-
-            try {
-                aInInvocation.goTo = new NonTerminal(
-                        production.getLeftHandSide(),
-                        production.onReduce(production, lValues));
-
-                return true;
-            }
-            catch (ParsingException pe) {
-                aInInvocation.errors.add(pe.getMessage());
-            }
-            return false;
-        }
-
         @Override
         public String toString() {
             return production.toString();
@@ -271,28 +369,53 @@ public class LRParsingTable<T> {
         ConditionalAction(T aInNextToken,
                           Action aInEqualsAction,
                           Action aInNotEqualsAction) {
+            super(CONDITIONAL);
             nextToken = aInNextToken;
             equalsAction = aInEqualsAction;
             notEqualsAction = aInNotEqualsAction;
         }
+    }
+
+    public class ParseSession implements Parser {
+        private TokenizerFactory<T> tokenizerFactory;
+
+        private Tokenizer<T> tokenizer;
+
+        private Deque<Symbol<?>> symbolStack = new ArrayDeque<>();
+
+        private Deque<State> stateStack = new ArrayDeque<>();
+
+        private ParseSession(TokenizerFactory<T> aInTokenizerFactory) {
+            tokenizerFactory = aInTokenizerFactory;
+        }
 
         @Override
-        public boolean execute(ParseInvocation aInInvocation)
+        public ParseResult parse(Reader aInReader)
                 throws IOException, UnrecognizedCharacterSequenceException {
-            Token<T, ?> lNextToken =
-                    aInInvocation.tokenizer.peekToken(
-                            aInInvocation.currentState);
-            if (Objects.equals(nextToken, lNextToken.getId())) {
-                return equalsAction.execute(aInInvocation);
+            if (tokenizer == null || !tokenizer.restart(aInReader)) {
+                tokenizer = tokenizerFactory.newTokenizer(aInReader);
+            }
+            symbolStack.clear();
+            stateStack.clear();
+
+            try {
+                return LRParsingTable.this.parse(new ParseInvocation(
+                        states.get(0), tokenizer, symbolStack, stateStack));
+            }
+            finally {
+                if (tokenizer instanceof AutoCloseable) {
+                    // can't be kept around
+                    close(tokenizer);
+                    tokenizer = null;
+                }
             }
-            return notEqualsAction.execute(aInInvocation);
         }
     }
 
     public class ParseInvocation implements ParseResult {
-        private Deque<Symbol<?>> symbolStack = new ArrayDeque<>();
+        private Deque<Symbol<?>> symbolStack;
 
-        private Deque<State> stateStack = new ArrayDeque<>();
+        private Deque<State> stateStack;
 
         private State currentState;
 
@@ -309,9 +432,13 @@ public class LRParsingTable<T> {
 
         private ParseInvocation(
             State aInCurrentState,
-            Tokenizer<T> aInTokenizer) {
+            Tokenizer<T> aInTokenizer,
+            Deque<Symbol<?>> aInSymbolStack,
+            Deque<State> aInStateStack) {
             currentState = aInCurrentState;
             tokenizer = aInTokenizer;
+            symbolStack = aInSymbolStack;
+            stateStack = aInStateStack;
         }
 
         private Action nextAction() {
@@ -0,0 +1,423 @@
+/*
+ * File: LRParsingTableGenerator.java
+ *
+ * Copyright 2020 Marcio D. Lucca
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mardlucca.parselib.parser;
+
+import mardlucca.parselib.parser.LRParsingTableLoader.PackedTable;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.PropertyResourceBundle;
+import java.util.ResourceBundle;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+import static java.lang.Character.isUpperCase;
+
+/**
+ * Generates the Java source of a parser for a grammar and its parsing table,
+ * so that they don't have to be loaded (see {@link GrammarLoader} and
+ * {@link LRParsingTableLoader}) when the application starts. The generated
+ * class extends {@link GeneratedParser}, holding the table as constants, and
+ * has a static <code>grammar()</code> method returning the grammar, to which
+ * reduce listeners can be added before creating the parser with it.
+ * <p>
+ * Terminals must be the constants of an enum, and are matched against the
+ * grammar and the table by their string representation when the generated
+ * class is initialized. As the enum is only referred to by name, it doesn't
+ * have to be compiled before the parser is generated, and can be compiled
+ * along with it.
+ * <p>
+ * Optionally, the parser is generated as a switch over the states of the
+ * table, with a nested switch over the terminals for the actions of each
+ * state, instead of looking the actions up in the table. Shifts and gotos
+ * then go straight to their target states.
+ * <p>
+ * Meant to be run as part of a build, e.g. from the Gradle tasks registered
+ * by <code>generate-parser.gradle</code>, with arguments: grammar file, table
+ * file, terminal enum class, generated class name, output directory and,
+ * optionally, error messages file. The arguments can be preceded by
+ * <code>--state-switch</code> to generate a state switch.
+ */
+public class LRParsingTableGenerator {
+    private static final String EPSILON_SYMBOL = "''";
+
+    private static final String STATE_SWITCH_OPTION = "--state-switch";
+
+    // table entries written per line
+    private static final int ENTRIES_PER_LINE = 4;
+
+    public static void main(String[] aInArgs) throws IOException {
+        boolean lStateSwitch = aInArgs.length > 0
+                && STATE_SWITCH_OPTION.equals(aInArgs[0]);
+        if (lStateSwitch) {
+            aInArgs = Arrays.copyOfRange(aInArgs, 1, aInArgs.length);
+        }
+        if (aInArgs.length < 5 || aInArgs.length > 6) {
+            System.err.println("Usage: LRParsingTableGenerator "
+                    + "[" + STATE_SWITCH_OPTION + "] <grammar> <table> "
+                    + "<terminal enum> <class> <output directory> "
+                    + "[<error messages>]");
+            System.exit(1);
+        }
+
+        ResourceBundle lErrorMessages = null;
+        if (aInArgs.length == 6) {
+            try (Reader lReader = Files.newBufferedReader(
+                    Paths.get(aInArgs[5]), StandardCharsets.UTF_8)) {
+                lErrorMessages = new PropertyResourceBundle(lReader);
+            }
+        }
+
+        Path lFile = Paths.get(aInArgs[4],
+                aInArgs[3].replace('.', '/') + ".java");
+        Files.createDirectories(lFile.getParent());
+        try (Reader lGrammar = Files.newBufferedReader(
+                    Paths.get(aInArgs[0]), StandardCharsets.UTF_8);
+             Reader lTable = Files.newBufferedReader(
+                    Paths.get(aInArgs[1]), StandardCharsets.UTF_8);
+             Writer lWriter = Files.newBufferedWriter(
+                    lFile, StandardCharsets.UTF_8)) {
+            generate(lGrammar, lTable, lErrorMessages, aInArgs[2],
+                    aInArgs[3], lStateSwitch, lWriter);
+        }
+    }
+
+    /**
+     * Writes the source of the parser class with the given name.
+     * {@code aInTerminalType} is the canonical name of the enum of the
+     * terminals. If {@code aInStateSwitch} is set, the parser is generated as
+     * a switch over the states of the table.
+     */
+    public static void generate(
+            Reader aInGrammarReader,
+            Reader aInTableReader,
+            ResourceBundle aInErrorMessages,
+            String aInTerminalType,
+            String aInClassName,
+            boolean aInStateSwitch,
+            Writer aInWriter) throws IOException {
+        // terminals are only known by name here, and are told apart from
+        // non-terminals the same way the grammar loader does
+        Function<String, Terminal> lTerminalParser = aInString ->
+                isUpperCase(aInString.charAt(0))
+                        || EPSILON_SYMBOL.equals(aInString)
+                        ? null : new Terminal(aInString);
+
+        Grammar lGrammar = GrammarLoader.load(
+                aInGrammarReader, lTerminalParser);
+        PackedTable lTable = LRParsingTableLoader.pack(
+                aInErrorMessages, aInTableReader, lTerminalParser);
+
+        int lDot = aInClassName.lastIndexOf('.');
+        String lSimpleName = aInClassName.substring(lDot + 1);
+        StringBuilder lSource = new StringBuilder();
+        lSource.append("// Generated by LRParsingTableGenerator. Do not edit.")
+                .append("\n\n");
+        if (lDot >= 0) {
+            lSource.append("package ")
+                    .append(aInClassName, 0, lDot)
+                    .append(";\n\n");
+        }
+        lSource.append("import mardlucca.parselib.parser.GeneratedParser;\n")
+                .append("import mardlucca.parselib.parser.Grammar;\n");
+        if (aInStateSwitch) {
+            lSource.append("import mardlucca.parselib.tokenizer.Token;\n")
+                    .append("import mardlucca.parselib.tokenizer.")
+                    .append("Tokenizer;\n");
+        }
+        lSource.append("import mardlucca.parselib.tokenizer.")
+                .append("TokenizerFactory;\n");
+        if (aInStateSwitch) {
+            lSource.append("import mardlucca.parselib.tokenizer.")
+                    .append("UnrecognizedCharacterSequenceException;\n\n")
+                    .append("import java.io.IOException;\n");
+        }
+        lSource.append('\n')
+                .append("public final class ").append(lSimpleName)
+                .append("\n        extends GeneratedParser<")
+                .append(aInTerminalType).append("> {\n");
+
+        lSource.append("    private static final String[] SYMBOLS = {\n");
+        for (Object lSymbol : lTable.symbols) {
+            lSource.append("        ").append(literal(lSymbol.toString()))
+                    .append(",\n");
+        }
+        lSource.append("    };\n\n");
+
+        lSource.append("    private static final String[] MESSAGES = {\n");
+        for (String lMessage : lTable.messages) {
+            lSource.append("        ").append(literal(lMessage)).append(",\n");
+        }
+        lSource.append("    };\n\n");
+
+        lSource.append("    private static final String[] ROWS = {\n");
+        for (int i = 0; i < lTable.rows.length; i++) {
+            String lRow = lTable.rows[i];
+            lSource.append("        // ").append(i).append('\n');
+            List<String> lLines = new ArrayList<>();
+            for (int j = 0; j < lRow.length(); j += 3 * ENTRIES_PER_LINE) {
+                lLines.add(literal(lRow.substring(
+                        j, Math.min(lRow.length(), j + 3 * ENTRIES_PER_LINE))));
+            }
+            if (lLines.isEmpty()) {
+                lLines.add("\"\"");
+            }
+            lSource.append("        ")
+                    .append(String.join(" +\n                ", lLines))
+                    .append(",\n");
+        }
+        lSource.append("    };\n\n");
+
+        lSource.append("    private static final Table<")
+                .append(aInTerminalType).append("> TABLE = new Table<>(\n")
+                .append("            ").append(aInTerminalType)
+                .append(".values(), SYMBOLS, MESSAGES, ROWS);\n\n");
+
+        lSource.append("    public ").append(lSimpleName).append("(\n")
+                .append("            TokenizerFactory<")
+                .append(aInTerminalType)
+                .append("> aInTokenizerFactory) {\n")
+                .append("        this(grammar(), aInTokenizerFactory);\n")
+                .append("    }\n\n");
+
+        lSource.append("    public ").append(lSimpleName).append("(\n")
+                .append("            Grammar aInGrammar,\n")
+                .append("            TokenizerFactory<")
+                .append(aInTerminalType)
+                .append("> aInTokenizerFactory) {\n")
+                .append("        super(aInGrammar, aInTokenizerFactory, ")
+                .append("TABLE);\n")
+                .append("    }\n\n");
+
+        lSource.append("    public static Grammar grammar() {\n")
+                .append("        return new Grammar()");
+        for (int i = 0; i < lGrammar.getProductionCount(); i++) {
+            Grammar.Production lProduction = lGrammar.getProduction(i);
+            lSource.append("\n                .addProduction(")
+                    .append(literal(lProduction.getLeftHandSide()));
+            for (Object lSymbol : lProduction.getRightHandSide()) {
+                lSource.append(", ").append(lSymbol instanceof Terminal
+                        ? "TABLE.terminal(" + literal(lSymbol.toString()) + ")"
+                        : literal(lSymbol.toString()));
+            }
+            lSource.append(')');
+        }
+        lSource.append(";\n    }\n");
+
+        if (aInStateSwitch) {
+            appendStateSwitch(lSource, lGrammar, lTable, aInTerminalType);
+        }
+        lSource.append("}\n");
+
+        aInWriter.write(lSource.toString());
+    }
+
+    /**
+     * Appends a parse method with a case per state, each with a case per
+     * terminal the state has an action for, and a goTo method with a case
+     * per left hand side, each with a case per state going to it.
+     */
+    private static void appendStateSwitch(
+            StringBuilder aInSource,
+            Grammar aInGrammar,
+            PackedTable aInTable,
+            String aInTerminalType) {
+        aInSource.append("\n    @Override\n")
+                .append("    protected void parse(\n")
+                .append("            Tokenizer<").append(aInTerminalType)
+                .append("> aInTokenizer,\n")
+                .append("            Invocation aInInvocation)\n")
+                .append("            throws IOException, ")
+                .append("UnrecognizedCharacterSequenceException {\n")
+                .append("        int lState = 0;\n")
+                .append("        Token<").append(aInTerminalType)
+                .append(", ?> lToken =\n")
+                .append("                aInTokenizer.nextToken(context(0));\n")
+                .append("        while (true) {\n")
+                .append("            int lProduction;\n")
+                .append("            switch (lState) {\n");
+
+        // go to entries by column of the left hand side
+        Map<Integer, Map<Integer, Integer>> lGoTos = new TreeMap<>();
+        for (int lState = 0; lState < aInTable.rows.length; lState++) {
+            String lRow = aInTable.rows[lState];
+            aInSource.append("                case ").append(lState)
+                    .append(":\n")
+                    .append("                    switch (column(lToken)) {\n");
+            boolean lReduces = false;
+            for (int i = 0; i < lRow.length(); i += 3) {
+                int lColumn = lRow.charAt(i);
+                int lArgument = lRow.charAt(i + 2);
+                char lAction = lRow.charAt(i + 1);
+                if (lAction == LRParsingTableLoader.GOTO) {
+                    lGoTos.computeIfAbsent(lColumn, aInKey -> new TreeMap<>())
+                            .put(lState, lArgument);
+                    continue;
+                }
+
+                aInSource.append("                        case ")
+                        .append(lColumn).append(": // ")
+                        .append(comment(aInTable.symbols[lColumn]))
+                        .append('\n');
+                String lIndent = "                            ";
+                switch (lAction) {
+                    case LRParsingTableLoader.SHIFT:
+                        aInSource.append(lIndent)
+                                .append("aInInvocation.push(")
+                                .append(lState).append(", lToken);\n")
+                                .append(lIndent).append("lState = ")
+                                .append(lArgument).append(";\n")
+                                .append(lIndent).append("lToken = ")
+                                .append("aInTokenizer.nextToken(context(")
+                                .append(lArgument).append("));\n")
+                                .append(lIndent).append("continue;\n");
+                        break;
+                    case LRParsingTableLoader.REDUCE:
+                        lReduces = true;
+                        aInSource.append(lIndent).append("lProduction = ")
+                                .append(lArgument).append("; // ")
+                                .append(comment(aInGrammar.getProduction(
+                                        lArgument)))
+                                .append('\n')
+                                .append(lIndent).append("break;\n");
+                        break;
+                    case LRParsingTableLoader.ACCEPT:
+                        aInSource.append(lIndent)
+                                .append("aInInvocation.accept();\n")
+                                .append(lIndent).append("return;\n");
+                        break;
+                    default:
+                        aInSource.append(lIndent)
+                                .append("aInInvocation.error(")
+                                .append(literal(aInTable.messages[lArgument]))
+                                .append(");\n")
+                                .append(lIndent).append("return;\n");
+                        break;
+                }
+            }
+            aInSource.append("                        default:\n")
+                    .append("                            ")
+                    .append("aInInvocation.error(SYNTAX_ERROR);\n")
+                    .append("                            return;\n")
+                    .append("                    }\n");
+            if (lReduces) {
+                // otherwise all cases above continue or return
+                aInSource.append("                    break;\n");
+            }
+        }
+        aInSource.append("                default:\n")
+                .append("                    throw new IllegalStateException(")
+                .append("\n                            \"Invalid state ")
+                .append("\" + lState);\n")
+                .append("            }\n\n")
+                .append("            lState = reduce(lState, lProduction, ")
+                .append("aInInvocation);\n")
+                .append("            if (lState < 0) {\n")
+                .append("                return;\n")
+                .append("            }\n")
+                .append("            lState = goTo(lState, lProduction);\n")
+                .append("            if (lState < 0) {\n")
+                .append("                aInInvocation.error(SYNTAX_ERROR);\n")
+                .append("                return;\n")
+                .append("            }\n")
+                .append("        }\n")
+                .append("    }\n");
+
+        aInSource.append("\n    private static int goTo(")
+                .append("int aInState, int aInProduction) {\n")
+                .append("        switch (aInProduction) {\n");
+        for (Map.Entry<Integer, Map<Integer, Integer>> lEntry
+                : lGoTos.entrySet()) {
+            String lLeftHandSide =
+                    aInTable.symbols[lEntry.getKey()].toString();
+            for (int i = 0; i < aInGrammar.getProductionCount(); i++) {
+                Grammar.Production lProduction = aInGrammar.getProduction(i);
+                if (lProduction.getLeftHandSide().equals(lLeftHandSide)) {
+                    aInSource.append("            case ").append(i)
+                            .append(": // ").append(comment(lProduction))
+                            .append('\n');
+                }
+            }
+            aInSource.append("                switch (aInState) {\n");
+            for (Map.Entry<Integer, Integer> lGoTo
+                    : lEntry.getValue().entrySet()) {
+                aInSource.append("                    case ")
+                        .append(lGoTo.getKey()).append(":\n")
+                        .append("                        return ")
+                        .append(lGoTo.getValue()).append(";\n");
+            }
+            aInSource.append("                }\n")
+                    .append("                break;\n");
+        }
+        aInSource.append("        }\n")
+                .append("        return -1;\n")
+                .append("    }\n");
+    }
+
+    private static String comment(Object aInObject) {
+        // a backslash could start a unicode escape, even in a comment
+        return aInObject.toString().replace("\\", "\\\\");
+    }
+
+    private static String literal(String aInString) {
+        StringBuilder lLiteral = new StringBuilder("\"");
+        for (int i = 0; i < aInString.length(); i++) {
+            char lChar = aInString.charAt(i);
+            if (lChar == '"' || lChar == '\\') {
+                lLiteral.append('\\').append(lChar);
+            } else if (lChar == '\n') {
+                lLiteral.append("\\n");
+            } else if (lChar == '\r') {
+                lLiteral.append("\\r");
+            } else if (lChar >= ' ' && lChar <= '~') {
+                lLiteral.append(lChar);
+            } else {
+                // unicode escapes of line terminators would break the literal,
+                // but those were handled above
+                lLiteral.append(String.format("\\u%04x", (int) lChar));
+            }
+        }
+        return lLiteral.append('"').toString();
+    }
+
+    /**
+     * A terminal, known only by its string representation.
+     */
+    private static class Terminal {
+        private String name;
+
+        private Terminal(String aInName) {
+            name = aInName;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+}
@@ -21,6 +21,10 @@ package mardlucca.parselib.parser;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.ResourceBundle;
 import java.util.function.Function;
 
@@ -34,15 +38,79 @@ public class LRParsingTableLoader {
             aInString -> isUpperCase(aInString.charAt(0))
                     ? aInString : null;
 
+    static final char SHIFT = 's';
+
+    static final char REDUCE = 'r';
+
+    static final char ERROR = 'e';
+
+    static final char ACCEPT = 'a';
+
+    static final char GOTO = 'g';
+
     public static <T> LRParsingTable<T> build(
             Grammar aInGrammar,
             ResourceBundle aInErrorMessages,
             Reader aInTableReader,
             Function<String, T> aInTerminalParser) {
+        PackedTable lTable = pack(
+                aInErrorMessages, aInTableReader, aInTerminalParser);
+        return unpack(aInGrammar, lTable.symbols, lTable.messages,
+                lTable.rows);
+    }
+
+    /**
+     * Builds a table from its packed form (see {@link PackedTable}).
+     */
+    private static <T> LRParsingTable<T> unpack(
+            Grammar aInGrammar,
+            Object[] aInSymbols,
+            String[] aInMessages,
+            String[] aInRows) {
         LRParsingTable<T> lParsingTable = new LRParsingTable<>(aInGrammar);
+        for (String lRow : aInRows) {
+            LRParsingTable<T>.State lState = lParsingTable.newState();
+            for (int i = 0; i < lRow.length(); i += 3) {
+                @SuppressWarnings("unchecked")
+                T lTerminal = (T) aInSymbols[lRow.charAt(i)];
+                int lArgument = lRow.charAt(i + 2);
+                switch (lRow.charAt(i + 1)) {
+                    case SHIFT:
+                        lState.shift(lTerminal, lArgument);
+                        break;
+                    case REDUCE:
+                        lState.reduce(lTerminal, lArgument);
+                        break;
+                    case ERROR:
+                        lState.error(lTerminal, aInMessages[lArgument]);
+                        break;
+                    case ACCEPT:
+                        lState.accept(lTerminal);
+                        break;
+                    case GOTO:
+                        lState.goTo(aInSymbols[lRow.charAt(i)].toString(),
+                                lArgument);
+                        break;
+                    default:
+                        throw new RuntimeException("Invalid action \"" +
+                                lRow.charAt(i + 1) + "\" in row \"" +
+                                lState.getNumber() + '"');
+                }
+            }
+        }
+        return lParsingTable;
+    }
+
+    static <T> PackedTable pack(
+            ResourceBundle aInErrorMessages,
+            Reader aInTableReader,
+            Function<String, T> aInTerminalParser) {
+        List<String> lRows = new ArrayList<>();
+        List<String> lMessages = new ArrayList<>();
+        Map<Integer, Integer> lMessageIndexes = new HashMap<>();
+        Object[] lSymbols = null;
         try (BufferedReader lReader = new BufferedReader(
                 aInTableReader)) {
-            Object[] lSymbols = null;
             boolean[] lIsTerminalFlags = null;
             int lExpectedState = 0;
 
@@ -85,7 +153,7 @@ public class LRParsingTableLoader {
                             '"');
                     }
 
-                    LRParsingTable<T>.State lState = lParsingTable.newState();
+                    StringBuilder lRow = new StringBuilder();
                     lExpectedState++;
                     for (int i = 1; i < lParts.length; i++) {
                         if (isBlank(lParts[i])) {
@@ -93,23 +161,25 @@ public class LRParsingTableLoader {
                         }
 
                         if (lIsTerminalFlags[i - 1]) {
-                            @SuppressWarnings("unchecked")
-                            T lTerminal = (T) lSymbols[i - 1];
                             if (lParts[i].charAt(0) == 's') {
-                                lState = lState.shift(lTerminal,
-                                    Integer.parseInt(
+                                entry(lRow, i - 1, SHIFT, Integer.parseInt(
                                         lParts[i].substring(1)));
                             } else if (lParts[i].charAt(0) == 'r') {
-                                lState = lState.reduce(
-                                        lTerminal,
-                                        Integer.parseInt(
-                                                lParts[i].substring(1)));
+                                entry(lRow, i - 1, REDUCE, Integer.parseInt(
+                                        lParts[i].substring(1)));
                             } else if (lParts[i].charAt(0) == 'e') {
-                                lState = lState.error(lTerminal,
-                                    getError(aInErrorMessages, Integer.parseInt(
-                                        lParts[i].substring(1))));
+                                int lCode = Integer.parseInt(
+                                        lParts[i].substring(1));
+                                Integer lIndex = lMessageIndexes.get(lCode);
+                                if (lIndex == null) {
+                                    lIndex = lMessages.size();
+                                    lMessages.add(
+                                            getError(aInErrorMessages, lCode));
+                                    lMessageIndexes.put(lCode, lIndex);
+                                }
+                                entry(lRow, i - 1, ERROR, lIndex);
                             } else if (lParts[i].equals("acc")) {
-                                lState = lState.accept(lTerminal);
+                                entry(lRow, i - 1, ACCEPT, 0);
                             } else {
                                 throw new RuntimeException(
                                     "Invalid action \"" + lParts[i] +
@@ -120,8 +190,8 @@ public class LRParsingTableLoader {
                         } else {
                             // go to expected for non-terminal symbol
                             if (isNumeric(lParts[i])) {
-                                lState.goTo(lSymbols[i - 1].toString(),
-                                    Integer.parseInt(lParts[i]));
+                                entry(lRow, i - 1, GOTO,
+                                        Integer.parseInt(lParts[i]));
                             } else {
                                 throw new RuntimeException(
                                     "Invalid action \"" + lParts[i] +
@@ -131,6 +201,7 @@ public class LRParsingTableLoader {
                             }
                         }
                     }
+                    lRows.add(lRow.toString());
                 }
             }
         }
@@ -138,7 +209,20 @@ public class LRParsingTableLoader {
             throw new RuntimeException(e);
         }
 
-        return lParsingTable;
+        return new PackedTable(lSymbols == null ? new Object[0] : lSymbols,
+                lMessages.toArray(new String[0]),
+                lRows.toArray(new String[0]));
+    }
+
+    private static void entry(StringBuilder aInRow, int aInColumn,
+                              char aInAction, int aInArgument) {
+        if (aInColumn > Character.MAX_VALUE
+                || aInArgument > Character.MAX_VALUE) {
+            throw new RuntimeException("Table too large to be packed");
+        }
+        aInRow.append((char) aInColumn)
+                .append(aInAction)
+                .append((char) aInArgument);
     }
 
     private static String getError(
@@ -155,4 +239,26 @@ public class LRParsingTableLoader {
         }
         return lErrorMessage;
     }
+
+    /**
+     * A table in a form that can be written as Java constants, e.g. by
+     * {@link LRParsingTableGenerator}. Each state is a row, with (column,
+     * action, argument) triples for all its non-blank entries. Columns are
+     * positions in the symbols array, and arguments are states, productions
+     * or positions in the messages array.
+     */
+    static class PackedTable {
+        final Object[] symbols;
+
+        final String[] messages;
+
+        final String[] rows;
+
+        PackedTable(Object[] aInSymbols, String[] aInMessages,
+                    String[] aInRows) {
+            symbols = aInSymbols;
+            messages = aInMessages;
+            rows = aInRows;
+        }
+    }
 }
@@ -18,16 +18,21 @@
 
 package mardlucca.parselib.parser;
 
+import mardlucca.parselib.tokenizer.CharSequenceReader;
 import mardlucca.parselib.tokenizer.UnrecognizedCharacterSequenceException;
 
 import java.io.IOException;
 import java.io.Reader;
-import java.io.StringReader;
 
 public interface Parser {
     default ParseResult parse(String aInString)
             throws IOException, UnrecognizedCharacterSequenceException {
-        return parse(new StringReader(aInString));
+        return parse((CharSequence) aInString);
+    }
+
+    default ParseResult parse(CharSequence aInCharSequence)
+            throws IOException, UnrecognizedCharacterSequenceException {
+        return parse(new CharSequenceReader(aInCharSequence));
     }
 
     ParseResult parse(Reader aInReader)
@@ -62,6 +62,33 @@ public class LRParserTest {
         assertEquals(20, (int) lMap.get("x"));
     }
 
+    @Test
+    public void testPipelined() throws Exception {
+        Map<String, Integer> lMap = new HashMap<>();
+        Parser lParser = new SimpleTestTable(lMap).buildParser(
+                builder::buildPipelined);
+        ParseResult lInvocation = lParser.parse("x = 20");
+        assertEquals(0, lInvocation.getErrors().size());
+        assertEquals(20, lInvocation.getValue());
+        assertEquals(20, (int) lMap.get("x"));
+    }
+
+    @Test
+    public void testSession() throws Exception {
+        Map<String, Integer> lMap = new HashMap<>();
+        Parser lParser = new SimpleTestTable(lMap).newSession(builder::build);
+
+        ParseResult lFirst = lParser.parse(new StringBuilder("x = 20"));
+        ParseResult lSecond = lParser.parse("x 20");
+        ParseResult lThird = lParser.parse("y = x");
+        assertEquals(0, lFirst.getErrors().size());
+        assertEquals(20, lFirst.getValue());
+        assertEquals(1, lSecond.getErrors().size());
+        assertEquals(0, lThird.getErrors().size());
+        assertEquals(20, lThird.getValue());
+        assertEquals(20, (int) lMap.get("y"));
+    }
+
     @Test
     public void testSimpleGrammar2() throws Exception {
         Map<String, Integer> lMap = new HashMap<>();
@@ -105,6 +132,29 @@ public class LRParserTest {
         assertEquals("Syntax error", lErrors.get(0));
     }
 
+    @Test
+    public void testPruneUnexpected() throws Exception {
+        BasicTokenizer.Builder<TestToken> lBuilder =
+                new BasicTokenizer.Builder<TestToken>()
+                        .recognize(whiteSpaces())
+                        .recognize(identifiers(TestToken.IDENTIFIER))
+                        .recognize(numbers(TestToken.NUMBER))
+                        .recognize(symbol("=", TestToken.ASSIGNMENT))
+                        .pruneUnexpected(true)
+                        .endOfFile(TestToken.EOF);
+        Map<String, Integer> lMap = new HashMap<>();
+        Parser lParser = new SimpleTestTable(lMap).buildParser(
+                lBuilder::build);
+
+        ParseResult lInvocation = lParser.parse("x = 20");
+        assertEquals(0, lInvocation.getErrors().size());
+        assertEquals(20, (int) lMap.get("x"));
+
+        List<String> lErrors = lParser.parse("x = =").getErrors();
+        assertEquals(1, lErrors.size());
+        assertEquals("Syntax error", lErrors.get(0));
+    }
+
     @Test
     public void testSimpleTestParser2() throws Exception {
         Parser lParser = new SimpleTestTable2().buildParser(builder::build);
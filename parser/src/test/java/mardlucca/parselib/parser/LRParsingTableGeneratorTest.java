@@ -0,0 +1,189 @@
+/*
+ * File: LRParsingTableGeneratorTest.java
+ *
+ * Copyright 2020 Marcio D. Lucca
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mardlucca.parselib.parser;
+
+import mardlucca.parselib.parser.generated.TestParser;
+import mardlucca.parselib.parser.generated.TestSwitchParser;
+import mardlucca.parselib.tokenizer.BasicTokenizer;
+import mardlucca.parselib.tokenizer.Token;
+import mardlucca.parselib.tokenizer.TokenizerFactory;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiFunction;
+
+import static java.util.Arrays.asList;
+import static mardlucca.parselib.tokenizer.Recognizers.*;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the parsers that the generateTestParser and generateTestSwitchParser
+ * tasks of the build generate from the LRParserBuilderTest grammar and table.
+ */
+public class LRParsingTableGeneratorTest {
+    private static final List<BiFunction<Grammar, TokenizerFactory<TestToken>,
+            Parser>> parsers = asList(TestParser::new, TestSwitchParser::new);
+
+    private static List<String> reducedProductions = new ArrayList<>();
+
+    private static BasicTokenizer.Builder<TestToken> tokenizerBuilder;
+
+    @BeforeClass
+    public static void beforeClass() {
+        tokenizerBuilder = new BasicTokenizer.Builder<TestToken>()
+                .recognize(whiteSpaces())
+                .recognize(identifiers(TestToken.IDENTIFIER))
+                .recognize(numbers(TestToken.NUMBER))
+                .recognize(symbol("+", TestToken.PLUS))
+                .recognize(symbol("*", TestToken.STAR))
+                .recognize(symbol(".", TestToken.PERIOD))
+                .recognize(symbol("(", TestToken.OPEN_PARENTHESIS))
+                .recognize(symbol(")", TestToken.CLOSE_PARENTHESIS))
+                .endOfFile(TestToken.EOF);
+    }
+
+    @Before
+    public void setUp() {
+        reducedProductions.clear();
+    }
+
+    @Test
+    public void testParse() throws Exception {
+        for (BiFunction<Grammar, TokenizerFactory<TestToken>, Parser> lNew
+                : parsers) {
+            testParse(lNew.apply(TestParser.grammar().onDefaultReduce(
+                    new TestParserListener(reducedProductions)),
+                    tokenizerBuilder::build));
+        }
+    }
+
+    private void testParse(Parser aInParser) throws Exception {
+        testString(aInParser, "a",
+                "DOT -> ''", "F -> id DOT", "M -> F", "S -> M");
+        testString(aInParser, "( a + 10 ) * b.c",
+                "DOT -> ''", "F -> id DOT", "M -> F", "S -> M", "F -> num",
+                "M -> F", "S -> S + M", "F -> ( S )", "M -> F", "DOT -> . id",
+                "F -> id DOT", "M -> M * F", "S -> M");
+        testString(aInParser, "1+2*3", "F -> num", "M -> F", "S -> M",
+                "F -> num", "M -> F", "F -> num", "M -> M * F", "S -> S + M");
+    }
+
+    @Test
+    public void testParseWithSyntaxError() throws Exception {
+        for (BiFunction<Grammar, TokenizerFactory<TestToken>, Parser> lNew
+                : parsers) {
+            reducedProductions.clear();
+            testParseWithSyntaxError(lNew.apply(
+                    TestParser.grammar().onDefaultReduce(
+                            new TestParserListener(reducedProductions)),
+                    tokenizerBuilder::build));
+        }
+    }
+
+    private void testParseWithSyntaxError(Parser aInParser) throws Exception {
+        assertEquals(asList("Unexpected end of file"),
+                aInParser.parse("( a + 10 ").getErrors());
+        assertEquals(asList("DOT -> ''", "F -> id DOT", "M -> F", "S -> M",
+                "F -> num", "M -> F", "S -> S + M"), reducedProductions);
+        assertEquals(asList("Syntax error"),
+                aInParser.parse("1 + + 2").getErrors());
+    }
+
+    @Test
+    public void testValue() throws Exception {
+        Grammar lGrammar = TestParser.grammar()
+                .onDefaultReduce((aInProduction, aInValues) ->
+                        aInValues.length == 1 ? aInValues[0] : null)
+                .onReduce("S -> S + M", (aInProduction, aInValues) ->
+                        (Integer) aInValues[0] + (Integer) aInValues[2])
+                .onReduce("M -> M * F", (aInProduction, aInValues) ->
+                        (Integer) aInValues[0] * (Integer) aInValues[2])
+                .onReduce("F -> ( S )",
+                        (aInProduction, aInValues) -> aInValues[1])
+                .onReduce("F -> num", (aInProduction, aInValues) ->
+                        ((Token<?, ?>) aInValues[0]).getValue());
+        for (BiFunction<Grammar, TokenizerFactory<TestToken>, Parser> lNew
+                : parsers) {
+            ParseResult lResult = lNew.apply(lGrammar, tokenizerBuilder::build)
+                    .parse("(1 + 2) * 3 + 4");
+            assertEquals(0, lResult.getErrors().size());
+            assertEquals(13, lResult.getValue());
+        }
+    }
+
+    @Test
+    public void testReduceError() throws Exception {
+        Grammar lGrammar = TestParser.grammar()
+                .onReduce("DOT -> ''", (aInProduction, aInValues) -> {
+                    throw new ParsingException("Member expected");
+                });
+        for (BiFunction<Grammar, TokenizerFactory<TestToken>, Parser> lNew
+                : parsers) {
+            assertEquals(asList("Member expected"), lNew.apply(
+                    lGrammar, tokenizerBuilder::build).parse("a + 1")
+                    .getErrors());
+        }
+    }
+
+    @Test
+    public void testPruneUnexpected() throws Exception {
+        BasicTokenizer.Builder<TestToken> lBuilder =
+                new BasicTokenizer.Builder<TestToken>()
+                        .recognize(whiteSpaces())
+                        .recognize(identifiers(TestToken.IDENTIFIER))
+                        .recognize(numbers(TestToken.NUMBER))
+                        .recognize(symbol("+", TestToken.PLUS))
+                        .recognize(symbol("*", TestToken.STAR))
+                        .pruneUnexpected(true)
+                        .endOfFile(TestToken.EOF);
+        for (BiFunction<Grammar, TokenizerFactory<TestToken>, Parser> lNew
+                : parsers) {
+            Parser lParser = lNew.apply(TestParser.grammar(), lBuilder::build);
+            assertEquals(0, lParser.parse("1+2*3").getErrors().size());
+            assertEquals(asList("Syntax error"),
+                    lParser.parse("1 2").getErrors());
+        }
+    }
+
+    @Test
+    public void testInvalidTerminal() {
+        try {
+            new GeneratedParser.Table<>(TestToken.values(),
+                    new String[] {"+", "?", "S"}, new String[0],
+                    new String[0]);
+
+            fail("Should have thrown exception");
+        }
+        catch (RuntimeException e) {
+            assertEquals("\"?\" is not a valid symbol", e.getMessage());
+        }
+    }
+
+    private static void testString(
+            Parser aInParser, String aInString, String... aInProductions)
+            throws Exception {
+        reducedProductions.clear();
+        ParseResult lResult = aInParser.parse(aInString);
+        assertEquals(0, lResult.getErrors().size());
+        assertEquals(asList(aInProductions), reducedProductions);
+    }
+}
@@ -18,6 +18,14 @@
 
 package mardlucca.parselib.tokenizer;
 
+/**
+ * Base class of most recognizers. Token values are computed by
+ * {@link #getValue(String)} when the token is recognized, unless the
+ * recognizer opts in to computing them lazily (see {@link #isValueLazy()}).
+ * Lazy values are computed on the first call to {@link Token#getValue()},
+ * which is then where any exception thrown computing them surfaces, e.g. the
+ * {@link NumberFormatException} of an integer literal that overflows.
+ */
 public abstract class BaseTokenRecognizer<T, V>
         implements TokenRecognizer<T, V> {
     private T token;
@@ -30,7 +38,31 @@ public abstract class BaseTokenRecognizer<T, V>
 
     @Override
     public Token<T, V> getToken(String aInCharSequence) {
-        return new Token<>(token, aInCharSequence, getValue(aInCharSequence));
+        if (!isValueLazy()) {
+            return new Token<>(token, aInCharSequence,
+                    getValue(aInCharSequence));
+        }
+
+        // the value is only computed if asked for, by which time this
+        // recognizer may have moved on to other tokens
+        int lState = getValueState();
+        return new LazyToken<T, V>(token, aInCharSequence) {
+            @Override
+            protected V computeValue() {
+                return BaseTokenRecognizer.this.getValue(
+                        getCharSequence(), lState);
+            }
+        };
+    }
+
+    @Override
+    public T getTokenId() {
+        return token;
+    }
+
+    @Override
+    public boolean isContextSensitive() {
+        return false;
     }
 
     @Override
@@ -47,6 +79,34 @@ public abstract class BaseTokenRecognizer<T, V>
         failureReason = null;
     }
 
+    /**
+     * Whether token values are only computed when asked for. Recognizers
+     * returning true must compute values from the character sequence and
+     * {@link #getValueState()} alone.
+     */
+    protected boolean isValueLazy() {
+        return false;
+    }
+
+    /**
+     * Captures any state of this recognizer, besides the character sequence,
+     * needed to compute the value of the token just recognized. It is passed
+     * back to {@link #getValue(String, int)}.
+     */
+    protected int getValueState() {
+        return 0;
+    }
+
+    protected V getValue(String aInCharSequence, int aInState) {
+        return getValue(aInCharSequence);
+    }
+
+    /**
+     * If values are computed lazily, this must only depend on the character
+     * sequence and the configuration of this recognizer. Lazy recognizers
+     * that need more override {@link #getValueState()} and
+     * {@link #getValue(String, int)}.
+     */
     protected abstract V getValue(String aInCharSequence);
 
     @Override
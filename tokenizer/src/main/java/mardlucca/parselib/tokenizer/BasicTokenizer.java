@@ -20,100 +20,627 @@ package mardlucca.parselib.tokenizer;
 
 import java.io.IOException;
 import java.io.Reader;
+import java.nio.CharBuffer;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
-public class BasicTokenizer<T> implements Tokenizer<T> {
-    private List<TokenRecognizer<T, ?>> recognizers;
+public class BasicTokenizer<T> implements LookaheadTokenizer<T> {
+    public static final String DEFAULT_MODE = "default";
+
+    // characters of long ignored tokens (e.g. comments) retained for error
+    // messages
+    private static final int TRIVIA_RETAINED = 64;
+
+    // characters covered by dispatch tables
+    private static final int DISPATCH_SIZE = 128;
+
+    private Mode<T> mode;
+
+    private Mode<T> initialMode;
+
+    private Deque<Mode<T>> modeStack = new ArrayDeque<>();
 
     private Reader reader;
 
+    // inputs held in memory are read directly rather than through the reader
+    private char[] array;
+
+    private CharSequence sequence;
+
+    private int inputStart;
+
+    private int inputIndex;
+
+    private int inputEnd;
+
+    // characters read in bulk from the reader, or copied from the sequence
+    // to be scanned in bulk
+    private char[] window;
+
+    // where in the sequence the characters in the window start, and how many
+    // there are
+    private int windowStart;
+
+    private int windowLength;
+
+    private int readBufferSize;
+
+    private int maxTokenLength;
+
+    private boolean dispatch;
+
+    // the dispatch table last used, and the recognizers it was built for
+    private List<TokenRecognizer<T, ?>> dispatchRecognizers;
+
+    private TokenRecognizer<T, ?>[][] dispatchTable;
+
     private T endOfFile;
 
-    private Token<T, ?> peekedToken;
+    // ring buffer of tokens already recognized. It holds the tokens consumed
+    // since the last mark (if any) followed by the tokens peeked ahead.
+    private Token<T, ?>[] lookahead;
+
+    private int first;
+
+    private int consumed;
+
+    private int ahead;
+
+    private boolean marked;
+
+    // characters read ahead of the current token, the next one on top
+    private int[] buffer = new int[16];
+
+    private int buffered;
 
-    private Deque<Integer> buffer = new ArrayDeque<>();
+    private int[] charactersRead = new int[16];
 
-    private List<Integer> charactersRead = new ArrayList<>();
+    private int charactersReadCount;
+
+    // characters of the current token read but not retained in
+    // charactersRead. Only ignored tokens and tokens whose value does not
+    // depend on their text have it discarded.
+    private int discarded;
+
+    // recognizers still matching the characters read so far
+    private TokenRecognizer<T, ?>[] recognizersLeft = newRecognizerArray(16);
+
+    // reused for every token in streaming mode
+    private MutableToken<T> cursor;
+
+    private int candidateStringLength;
+
+    // number of characters consumed from the input
+    private long position;
+
+    private long tokenStart;
+
+    private long tokenEnd;
+
+    private boolean endOfInputReached;
+
+    private String failureSequence;
+
+    private String failureDetail;
+
+    private T errorToken;
+
+    private boolean stackTraces;
+
+    private boolean pruneUnexpected;
+
+    private boolean cacheConditions;
+
+    private StringInterner interner;
+
+    private boolean recordTrivia;
+
+    // (kind, start, length) triples of the ignored tokens found since the
+    // last token returned
+    private long[] trivia;
+
+    private int triviaCount;
 
     private BasicTokenizer(
-            List<TokenRecognizer<T, ?>> aInRecognizers,
+            Mode<T> aInMode,
             Reader aInReader,
-            T aInEndOfFile) {
-        recognizers = aInRecognizers;
-        reader = aInReader;
+            T aInEndOfFile,
+            boolean aInPruneUnexpected,
+            boolean aInCacheConditions,
+            int aInLookahead,
+            T aInErrorToken,
+            boolean aInStackTraces,
+            StringInterner aInInterner,
+            boolean aInTrivia,
+            int aInReadBufferSize,
+            int aInMaxTokenLength,
+            boolean aInDispatch,
+            boolean aInStreaming) {
+        mode = aInMode;
+        initialMode = aInMode;
+        readBufferSize = aInReadBufferSize;
+        maxTokenLength = aInMaxTokenLength;
+        dispatch = aInDispatch;
+        setInput(aInReader);
         endOfFile = aInEndOfFile;
+        pruneUnexpected = aInPruneUnexpected;
+        cacheConditions = aInCacheConditions;
+        lookahead = newTokenArray(aInLookahead);
+        errorToken = aInErrorToken;
+        stackTraces = aInStackTraces;
+        interner = aInInterner;
+        recordTrivia = aInTrivia;
+        if (aInTrivia) {
+            trivia = new long[12];
+        }
+        if (aInStreaming) {
+            cursor = new MutableToken<>(aInInterner);
+        }
     }
 
     @Override
     public Token<T, ?> nextToken(Object aInSyntacticContext)
             throws IOException, UnrecognizedCharacterSequenceException {
-        return nextToken(false, aInSyntacticContext);
+        if (ahead == 0) {
+            if (cursor != null && !marked) {
+                // nothing is kept around, so we can hand out the cursor
+                return recognizeCursor(aInSyntacticContext);
+            }
+            append(recognizeToken(false, aInSyntacticContext));
+        }
+
+        Token<T, ?> lToken = lookahead[index(consumed)];
+        ahead--;
+        if (marked) {
+            // keep it around so we can go back to it
+            consumed++;
+        } else {
+            lookahead[first] = null;
+            first = index(1);
+        }
+        return lToken;
+    }
+
+    @Override
+    public boolean restart(Reader aInReader) {
+        setInput(aInReader);
+        mode = initialMode;
+        modeStack.clear();
+        Arrays.fill(lookahead, null);
+        first = 0;
+        consumed = 0;
+        ahead = 0;
+        marked = false;
+        buffered = 0;
+        charactersReadCount = 0;
+        position = 0;
+        failureSequence = null;
+        triviaCount = 0;
+        return true;
+    }
+
+    private void setInput(Reader aInReader) {
+        reader = aInReader;
+        array = null;
+        sequence = null;
+        inputIndex = 0;
+        inputEnd = 0;
+        windowLength = 0;
+        if (aInReader instanceof CharSequenceReader) {
+            CharSequenceReader lReader = (CharSequenceReader) aInReader;
+            CharSequence lChars = lReader.getChars();
+            if (lChars instanceof CharBuffer
+                    && ((CharBuffer) lChars).hasArray()) {
+                CharBuffer lBuffer = (CharBuffer) lChars;
+                setInput(lBuffer.array(),
+                        lBuffer.arrayOffset() + lBuffer.position(),
+                        lReader.getPosition(), lReader.getEnd());
+            } else {
+                sequence = lChars;
+                inputStart = lReader.getPosition();
+                inputIndex = inputStart;
+                inputEnd = lReader.getEnd();
+            }
+        }
+    }
+
+    private void setInput(
+            char[] aInArray, int aInOffset, int aInStart, int aInEnd) {
+        reader = null;
+        array = aInArray;
+        inputStart = aInOffset + aInStart;
+        inputIndex = inputStart;
+        inputEnd = aInOffset + aInEnd;
+    }
+
+    /**
+     * Consumes up to {@code aInLength} tokens into {@code aInTokens},
+     * starting at {@code aInOffset} and stopping after the end of file token.
+     * Returns the number of tokens stored. Tokens are recognized without a
+     * syntactic context.
+     */
+    public int nextTokens(
+            Token<T, ?>[] aInTokens, int aInOffset, int aInLength)
+            throws IOException, UnrecognizedCharacterSequenceException {
+        int lCount = 0;
+        // tokens already peeked (or kept for a mark) go through the buffer
+        while ((ahead > 0 || marked) && lCount < aInLength) {
+            Token<T, ?> lToken = nextToken(null);
+            aInTokens[aInOffset + lCount++] = lToken;
+            if (Objects.equals(lToken.getId(), endOfFile)) {
+                return lCount;
+            }
+        }
+        while (lCount < aInLength) {
+            Token<T, ?> lToken = recognizeToken(false, null);
+            aInTokens[aInOffset + lCount++] = lToken;
+            if (Objects.equals(lToken.getId(), endOfFile)) {
+                return lCount;
+            }
+        }
+        return lCount;
+    }
+
+    /**
+     * Consumes all remaining tokens, up to and including the end of file,
+     * handing them to {@code aInSink}. Tokens are recognized without a
+     * syntactic context.
+     */
+    public void tokenize(TokenSink<T> aInSink)
+            throws IOException, UnrecognizedCharacterSequenceException {
+        Token<T, ?> lToken;
+        while (ahead > 0 || marked) {
+            lToken = nextToken(null);
+            aInSink.accept(lToken);
+            if (Objects.equals(lToken.getId(), endOfFile)) {
+                return;
+            }
+        }
+        do {
+            lToken = cursor == null
+                    ? recognizeToken(false, null)
+                    : recognizeCursor(null);
+            aInSink.accept(lToken);
+        }
+        while (!Objects.equals(lToken.getId(), endOfFile));
     }
 
     @Override
     public Token<T, ?> peekToken(Object aInSyntacticContext)
             throws IOException, UnrecognizedCharacterSequenceException {
-        return nextToken(true, aInSyntacticContext);
+        return peekToken(1, aInSyntacticContext);
+    }
+
+    @Override
+    public Token<T, ?> peekToken(int aInDistance, Object aInSyntacticContext)
+            throws IOException, UnrecognizedCharacterSequenceException {
+        if (aInDistance < 1) {
+            throw new IllegalArgumentException(
+                    "Distance must be at least 1: " + aInDistance);
+        }
+
+        while (ahead < aInDistance) {
+            append(recognizeToken(true, aInSyntacticContext));
+        }
+        return lookahead[index(consumed + aInDistance - 1)];
     }
 
-    private Token<T, ?> nextToken(boolean aInPeek, Object aInSyntacticContext)
-        throws IOException, UnrecognizedCharacterSequenceException {
-        if (peekedToken != null ) {
-            if (aInPeek) {
-                // still peeking, so return same peeked token
-                return peekedToken;
+    @Override
+    public void mark() {
+        release();
+        marked = true;
+    }
+
+    @Override
+    public void reset() {
+        if (!marked) {
+            throw new IllegalStateException("Tokenizer was not marked");
+        }
+        // tokens consumed since the mark are now ahead of us again
+        ahead += consumed;
+        consumed = 0;
+        marked = false;
+    }
+
+    @Override
+    public void unmark() {
+        release();
+        marked = false;
+    }
+
+    private void release() {
+        for (int i = 0; i < consumed; i++) {
+            lookahead[index(i)] = null;
+        }
+        first = index(consumed);
+        consumed = 0;
+    }
+
+    private void append(Token<T, ?> aInToken) {
+        if (consumed + ahead == lookahead.length) {
+            Token<T, ?>[] lLookahead = newTokenArray(lookahead.length * 2);
+            for (int i = 0; i < lookahead.length; i++) {
+                lLookahead[i] = lookahead[index(i)];
             }
-            // not peeking anymore, so we consume previously peeked token
-            Token<T, ?> lToken = peekedToken;
-            peekedToken = null;
+            lookahead = lLookahead;
+            first = 0;
+        }
+        lookahead[index(consumed + ahead)] = aInToken;
+        ahead++;
+    }
+
+    private int index(int aInOffset) {
+        return (first + aInOffset) % lookahead.length;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Token<T, ?>[] newTokenArray(int aInLength) {
+        return (Token<T, ?>[]) new Token<?, ?>[Math.max(1, aInLength)];
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> TokenRecognizer<T, ?>[] newRecognizerArray(
+            int aInLength) {
+        return (TokenRecognizer<T, ?>[]) new TokenRecognizer<?, ?>[aInLength];
+    }
+
+    private Token<T, ?> recognizeToken(
+            boolean aInPeek, Object aInSyntacticContext)
+            throws IOException, UnrecognizedCharacterSequenceException {
+        TokenRecognizer<T, ?> lCandidate =
+                recognizeCandidate(aInPeek, aInSyntacticContext);
+        if (failureSequence != null) {
+            Token<T, ?> lToken = withTrivia(unrecognized());
+            switchMode(lToken.getId());
             return lToken;
         }
 
+        if (lCandidate == null) {
+            // end of file/stream.
+            return withTrivia(new Token<>(endOfFile, null, null));
+        }
+
+        Token<T, ?> lToken = withTrivia(lCandidate.getToken(candidateText()));
+        switchMode(lToken.getId());
+        return lToken;
+    }
+
+    private Token<T, ?> recognizeCursor(Object aInSyntacticContext)
+            throws IOException, UnrecognizedCharacterSequenceException {
+        TokenRecognizer<T, ?> lCandidate =
+                recognizeCandidate(false, aInSyntacticContext);
+        if (failureSequence != null) {
+            Token<T, ?> lToken = withTrivia(unrecognized());
+            switchMode(lToken.getId());
+            return lToken;
+        }
+
+        if (recordTrivia) {
+            // the cursor is only valid until the next call, which is when the
+            // trivia buffer gets overwritten
+            cursor.setTrivia(trivia, triviaCount);
+            triviaCount = 0;
+        }
+        if (lCandidate == null) {
+            cursor.set(endOfFile, null, null, 0, tokenStart, tokenEnd);
+            return cursor;
+        }
+
+        T lId = lCandidate.getTokenId();
+        if (lId == null) {
+            // we can't tell the id without building the token
+            lId = lCandidate.getToken(candidateText()).getId();
+        }
+        int lLength = candidateStringLength;
+        if (discarded > 0) {
+            // we only have the beginning of the text
+            lLength = charactersReadCount - 1;
+        } else if (charactersRead[lLength - 1] == -1) {
+            // last character is EOF
+            lLength--;
+        }
+        cursor.set(lId, lCandidate, charactersRead, lLength, tokenStart,
+                tokenEnd);
+        switchMode(lId);
+        return cursor;
+    }
+
+    /**
+     * Recognizes the next token that is not ignored, returning the recognizer
+     * that matched it, or null if the end of the input was reached or the
+     * input could not be recognized (in which case the failure is recorded).
+     */
+    private TokenRecognizer<T, ?> recognizeCandidate(
+            boolean aInPeek, Object aInSyntacticContext) throws IOException {
+        while (true) {
+            List<TokenRecognizer<T, ?>> lActiveRecognizers =
+                    getRecognizers(aInSyntacticContext, false);
+            List<TokenRecognizer<T, ?>> lRecognizers = aInPeek
+                    // we don't know in which context a peeked token will be
+                    // consumed so we can't prune recognizers for it
+                    ? lActiveRecognizers
+                    : getRecognizers(aInSyntacticContext, true);
+            TokenRecognizer<T, ?> lCandidate = recognize(lRecognizers,
+                    aInSyntacticContext, lRecognizers == lActiveRecognizers);
+            if (lCandidate == null
+                    && failureSequence == null
+                    && charactersReadCount > 0) {
+                // none of the recognizers expected in this context produced a
+                // match. We try again with all recognizers so that the caller
+                // gets to see (and report) the unexpected token.
+                lCandidate = recognize(
+                        lActiveRecognizers, aInSyntacticContext, true);
+            }
+            tokenEnd = position;
+
+            if (lCandidate == null || !lCandidate.isIgnored()) {
+                return lCandidate;
+            }
+            // we found a candidate that must be discarded (e.g. white spaces,
+            // comments, etc). Discard it.
+            if (recordTrivia) {
+                addTrivia(lCandidate);
+            }
+        }
+    }
+
+    private void addTrivia(TokenRecognizer<T, ?> aInRecognizer) {
+        if (triviaCount * 3 == trivia.length) {
+            trivia = Arrays.copyOf(trivia, trivia.length * 2);
+        }
+        Integer lKind = mode.kinds.get(aInRecognizer);
+        int lIndex = triviaCount * 3;
+        trivia[lIndex] = lKind == null ? -1 : lKind;
+        trivia[lIndex + 1] = tokenStart;
+        trivia[lIndex + 2] = tokenEnd - tokenStart;
+        triviaCount++;
+    }
+
+    private Token<T, ?> withTrivia(Token<T, ?> aInToken) {
+        if (recordTrivia && triviaCount > 0) {
+            aInToken.setTrivia(
+                    Arrays.copyOf(trivia, triviaCount * 3), triviaCount);
+            triviaCount = 0;
+        }
+        return aInToken;
+    }
+
+    private String candidateText() {
+        if (discarded > 0) {
+            // we only have the beginning of the text
+            return readText();
+        }
+        int lLength = candidateStringLength;
+        if (charactersRead[lLength - 1] == -1) {
+            // last character is EOF
+            lLength--;
+        }
+        if (interner != null) {
+            return interner.intern(charactersRead, lLength);
+        }
+
+        // take the text straight from the input, if we have it
+        int lStart = inputStart + (int) tokenStart;
+        if (array != null) {
+            return new String(array, lStart, lLength);
+        }
+        if (sequence != null) {
+            return sequence.subSequence(lStart, lStart + lLength).toString();
+        }
+        return toString(charactersRead, candidateStringLength);
+    }
+
+    private void failed(String aInSequence, String aInDetail) {
+        failureSequence = aInSequence;
+        failureDetail = aInDetail;
+    }
+
+    private Token<T, ?> unrecognized()
+            throws UnrecognizedCharacterSequenceException {
+        String lSequence = failureSequence;
+        failureSequence = null;
+        if (errorToken == null) {
+            throw new UnrecognizedCharacterSequenceException(
+                    lSequence, failureDetail, stackTraces);
+        }
+        return new Token<>(errorToken, lSequence, failureDetail == null
+                ? UnrecognizedCharacterSequenceException.DEFAULT_DETAIL
+                : failureDetail);
+    }
+
+    private TokenRecognizer<T, ?> recognize(
+            List<TokenRecognizer<T, ?>> aInRecognizers,
+            Object aInSyntacticContext,
+            boolean aInLastAttempt)
+            throws IOException {
         // reset stuff
-        recognizers.forEach(TokenRecognizer::reset);
-        List<TokenRecognizer<T, ?>> lRecognizersLeft =
-                new LinkedList<>(recognizers);
+        int lRecognizersLeft = aInRecognizers.size();
+        if (recognizersLeft.length < lRecognizersLeft) {
+            recognizersLeft = newRecognizerArray(lRecognizersLeft);
+        }
+        int lFirst = dispatch ? peekChar() : -1;
+        if (lFirst >= 0 && lFirst < DISPATCH_SIZE) {
+            // only recognizers that may accept the first character
+            TokenRecognizer<T, ?>[] lStarting =
+                    dispatchTable(aInRecognizers)[lFirst];
+            lRecognizersLeft = lStarting.length;
+            for (int i = 0; i < lRecognizersLeft; i++) {
+                TokenRecognizer<T, ?> lRecognizer = lStarting[i];
+                lRecognizer.reset();
+                recognizersLeft[i] = lRecognizer;
+            }
+        } else {
+            for (int i = 0; i < lRecognizersLeft; i++) {
+                TokenRecognizer<T, ?> lRecognizer = aInRecognizers.get(i);
+                lRecognizer.reset();
+                recognizersLeft[i] = lRecognizer;
+            }
+        }
         TokenRecognizer<T, ?> lCandidate = null;
         TokenRecognizer<T, ?> lPartialCandidate = null;
-        int lCandidateStringLength = 0;
-        charactersRead.clear();
+        candidateStringLength = 0;
+        charactersReadCount = 0;
+        discarded = 0;
+        boolean lDiscarding = false;
+        MatchResult lLastResult = null;
+        tokenStart = position;
+        endOfInputReached = false;
 
         do {
             int lCurrentCharacter = nextChar();
-            if (lCurrentCharacter == -1 && charactersRead.isEmpty()) {
+            if (lCurrentCharacter == -1 && charactersReadCount == 0) {
                 // end of file/stream.
-                return new Token<>(endOfFile, null, null);
+                return null;
             }
 
-            charactersRead.add(lCurrentCharacter);
+            if (lDiscarding && charactersReadCount >= TRIVIA_RETAINED) {
+                // we only need the last character, in case it has to be
+                // pushed back
+                charactersRead[charactersReadCount - 1] = lCurrentCharacter;
+                discarded++;
+            } else {
+                if (charactersReadCount == charactersRead.length) {
+                    charactersRead = Arrays.copyOf(
+                            charactersRead, charactersReadCount * 2);
+                }
+                charactersRead[charactersReadCount++] = lCurrentCharacter;
+            }
+            int lRead = charactersReadCount + discarded;
 
-            for (Iterator<TokenRecognizer<T, ?>> lIterator =
-                lRecognizersLeft.iterator(); lIterator.hasNext(); ) {
-                TokenRecognizer<T, ?> lRecognizer = lIterator.next();
+            int lMatching = 0;
+            for (int i = 0; i < lRecognizersLeft; i++) {
+                TokenRecognizer<T, ?> lRecognizer = recognizersLeft[i];
                 MatchResult lMatchResult = lRecognizer.test(
                         lCurrentCharacter, aInSyntacticContext);
                 if (lMatchResult == MatchResult.FAILURE) {
                     // stop immediately
-                    throw new UnrecognizedCharacterSequenceException(
-                            toString(charactersRead, charactersRead.size()),
-                            lRecognizer.getFailureReason());
+                    failed(readText(), lRecognizer.getFailureReason());
+                    return null;
                 }
                 if (lMatchResult == MatchResult.NOT_A_MATCH) {
                     // discard recognizer as we know it will not match the final
                     // string
-                    lIterator.remove();
-                } else if (lMatchResult == MatchResult.MATCH) {
-                    if (charactersRead.size() > lCandidateStringLength) {
+                    continue;
+                }
+                recognizersLeft[lMatching++] = lRecognizer;
+                lLastResult = lMatchResult;
+                if (lMatchResult == MatchResult.MATCH) {
+                    if (lRead > candidateStringLength) {
                         // This is the first candidate in this pass.
-                        lCandidateStringLength = charactersRead.size();
+                        candidateStringLength = lRead;
                         lCandidate = lRecognizer;
                     }
                     // else we already have a candidate, so we prioritize the
@@ -127,18 +654,88 @@ public class BasicTokenizer<T> implements Tokenizer<T> {
                     lPartialCandidate = lRecognizer;
                 }
             }
-        } while (lRecognizersLeft.size() > 0);
+            lRecognizersLeft = lMatching;
+            if (!lDiscarding) {
+                lDiscarding = isDiscardable(lRecognizersLeft);
+                if (!lDiscarding
+                        && lRecognizersLeft > 0
+                        && charactersReadCount > maxTokenLength) {
+                    if (candidateStringLength > 0
+                            && candidateStringLength <= maxTokenLength) {
+                        // the characters past a candidate that fits may well
+                        // start other tokens, so we settle for the candidate
+                        break;
+                    }
+                    // we give up on this token, and carry on after the
+                    // characters read so far
+                    failed(toString(charactersRead,
+                            Math.min(charactersReadCount, TRIVIA_RETAINED))
+                            + "...", "Token longer than " + maxTokenLength
+                            + " characters");
+                    return null;
+                }
+            }
+            if (lRecognizersLeft == 1 && buffered == 0
+                    && inputIndex < inputEnd) {
+                // a single recognizer is left, which may be able to take the
+                // next characters in bulk
+                char[] lChars = array == null ? window : array;
+                int lOffset = 0;
+                int lEnd = inputEnd;
+                if (sequence != null) {
+                    lOffset = mirror();
+                    lChars = window;
+                    lEnd = lOffset + windowLength;
+                }
+                if (!lDiscarding && maxTokenLength - charactersReadCount
+                        < lEnd - inputIndex) {
+                    lEnd = inputIndex
+                            + Math.max(0, maxTokenLength - charactersReadCount);
+                }
+                int lRun = recognizersLeft[0].scan(
+                        lChars, inputIndex - lOffset, lEnd - lOffset);
+                if (lRun > 0) {
+                    consume(lChars, inputIndex - lOffset, lRun, lDiscarding);
+                    if (lLastResult == MatchResult.MATCH) {
+                        candidateStringLength = charactersReadCount + discarded;
+                    }
+                }
+            }
+        } while (lRecognizersLeft > 0);
         // because we left the loop, no recognizers recognized the current
         // character, so it must belong to the next token. We let it be and
         // proceed with what we know so far
 
-        // any characters that were read that are not present in the candidate
-        // string must be put back into a buffer so we can start the next pass
-        // from them
-        for (int i = charactersRead.size() - 1;
-                i >= lCandidateStringLength;
-                i--) {
-            buffer.addFirst(charactersRead.get(i));
+        if (discarded > 0 && candidateStringLength
+                < discarded + charactersReadCount - 1) {
+            // the ignored token we committed to did not match in the end and
+            // we can't go back. The last character may start the next token.
+            pushBack(charactersReadCount - 1);
+            failed(readText(), lPartialCandidate == null
+                    ? null
+                    : lPartialCandidate.getFailureReason());
+            return null;
+        }
+
+        if (lCandidate == null && !aInLastAttempt) {
+            // put everything back so the caller can try again with a different
+            // set of recognizers
+            pushBack(0);
+            return null;
+        }
+
+        if (lCandidate == null && errorToken != null) {
+            // the error token covers all the characters read, so the next
+            // token starts after them instead of overlapping it. Only an end
+            // of file is put back.
+            pushBack(charactersRead[charactersReadCount - 1] == -1
+                    ? charactersReadCount - 1
+                    : charactersReadCount);
+        } else {
+            // any characters that were read that are not present in the
+            // candidate string must be put back into a buffer so we can start
+            // the next pass from them
+            pushBack(candidateStringLength - discarded);
         }
 
         if (lCandidate == null) {
@@ -154,31 +751,330 @@ public class BasicTokenizer<T> implements Tokenizer<T> {
             // character (that could not be recognized and did not produce even
             // a partial match). We remove it from the buffer so that we can
             // continue tokenizing, if required.
-            buffer.pop();
+            if (errorToken == null) {
+                buffered--;
+                position++;
+            }
 
-            throw new UnrecognizedCharacterSequenceException(
-                    toString(charactersRead, charactersRead.size()),
-                    lDetails);
+            failed(readText(), lDetails);
         }
 
-        if (lCandidate.isIgnored()) {
-            // we found a candidate that must be discarded (e.g. white spaces,
-            // comments, etc). Discard it.
-            return nextToken(aInPeek, aInSyntacticContext);
+        return lCandidate;
+    }
+
+    private TokenRecognizer<T, ?>[][] dispatchTable(
+            List<TokenRecognizer<T, ?>> aInRecognizers) {
+        if (aInRecognizers != dispatchRecognizers) {
+            dispatchTable = mode.dispatchTables.computeIfAbsent(
+                    aInRecognizers, BasicTokenizer::newDispatchTable);
+            dispatchRecognizers = aInRecognizers;
         }
+        return dispatchTable;
+    }
 
-        Token<T, ?> lToken = lCandidate.getToken(
-                toString(charactersRead, lCandidateStringLength));
+    /**
+     * For each ASCII character, the recognizers that accept it as the first
+     * character of a token. Context sensitive recognizers are always
+     * included, as what they accept can't be told ahead of time.
+     */
+    private static <T> TokenRecognizer<T, ?>[][] newDispatchTable(
+            List<TokenRecognizer<T, ?>> aInRecognizers) {
+        @SuppressWarnings("unchecked")
+        TokenRecognizer<T, ?>[][] lTable = (TokenRecognizer<T, ?>[][])
+                new TokenRecognizer<?, ?>[DISPATCH_SIZE][];
+        List<TokenRecognizer<T, ?>> lStarting = new ArrayList<>();
+        for (int c = 0; c < DISPATCH_SIZE; c++) {
+            lStarting.clear();
+            for (TokenRecognizer<T, ?> lRecognizer : aInRecognizers) {
+                if (lRecognizer.isContextSensitive()) {
+                    lStarting.add(lRecognizer);
+                    continue;
+                }
+                lRecognizer.reset();
+                if (lRecognizer.test(c, null) != MatchResult.NOT_A_MATCH) {
+                    lStarting.add(lRecognizer);
+                }
+                lRecognizer.reset();
+            }
+            lTable[c] = lStarting.toArray(newRecognizerArray(0));
+        }
+        return lTable;
+    }
 
-        if (aInPeek) {
-            peekedToken = lToken;
+    /**
+     * Whether the token being recognized is sure to be either ignored or have
+     * a value that does not depend on its text, in which case its text doesn't
+     * need to be retained.
+     */
+    private boolean isDiscardable(int aInRecognizersLeft) {
+        if (aInRecognizersLeft == 0) {
+            return false;
+        }
+        for (int i = 0; i < aInRecognizersLeft; i++) {
+            TokenRecognizer<T, ?> lRecognizer = recognizersLeft[i];
+            if (!lRecognizer.isCommitted() || !lRecognizer.isIgnored()
+                    && lRecognizer.isTextRequired()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Consumes the given number of characters from the input, as if they
+     * were read one at a time by {@link #recognize}. They are found in
+     * {@code aInChars} from {@code aInStart} on.
+     */
+    private void consume(char[] aInChars, int aInStart, int aInLength,
+                         boolean aInDiscarding) {
+        int lRetained = aInDiscarding
+                ? Math.max(0, Math.min(aInLength,
+                        TRIVIA_RETAINED - charactersReadCount))
+                : aInLength;
+        if (charactersReadCount + lRetained > charactersRead.length) {
+            charactersRead = Arrays.copyOf(charactersRead, Math.max(
+                    charactersReadCount + lRetained, charactersReadCount * 2));
+        }
+        for (int i = 0; i < lRetained; i++) {
+            charactersRead[charactersReadCount++] = aInChars[aInStart + i];
+        }
+        if (lRetained < aInLength) {
+            // we only need the last character, in case it has to be pushed
+            // back
+            charactersRead[charactersReadCount - 1] =
+                    aInChars[aInStart + aInLength - 1];
+            discarded += aInLength - lRetained;
+        }
+        inputIndex += aInLength;
+        position += aInLength;
+    }
+
+    private String readText() {
+        if (discarded == 0) {
+            return toString(charactersRead, charactersReadCount);
+        }
+        // the middle of the text was not retained
+        return toString(charactersRead, charactersReadCount - 1) + "...";
+    }
+
+    private void switchMode(T aInTokenId) {
+        Mode<T> lMode = mode.pushes.get(aInTokenId);
+        if (lMode != null) {
+            modeStack.push(mode);
+            mode = lMode;
+        } else if (mode.pops.contains(aInTokenId) && !modeStack.isEmpty()) {
+            mode = modeStack.pop();
         }
-        return lToken;
+    }
+
+    private List<TokenRecognizer<T, ?>> getRecognizers(
+            Object aInSyntacticContext, boolean aInPrune) {
+        boolean lPrune = aInPrune
+                && pruneUnexpected
+                && aInSyntacticContext instanceof SyntacticContext;
+        if (!lPrune && !cacheConditions) {
+            return mode.recognizers;
+        }
+
+        return (lPrune
+                ? mode.prunedRecognizersByContext
+                : mode.recognizersByContext)
+                .computeIfAbsent(aInSyntacticContext, aInContext -> lPrune
+                        ? prune(aInContext)
+                        : select(aInContext));
+    }
+
+    private List<TokenRecognizer<T, ?>> select(Object aInSyntacticContext) {
+        List<TokenRecognizer<T, ?>> lRecognizers = new ArrayList<>();
+        boolean lChanged = false;
+        for (TokenRecognizer<T, ?> lRecognizer : mode.recognizers) {
+            TokenRecognizer<T, ?> lSelected =
+                    lRecognizer.forContext(aInSyntacticContext);
+            if (lSelected != null) {
+                lRecognizers.add(lSelected);
+                if (lSelected != lRecognizer) {
+                    mode.kinds.put(lSelected, mode.kinds.get(lRecognizer));
+                }
+            }
+            lChanged |= lSelected != lRecognizer;
+        }
+
+        return lChanged ? lRecognizers : mode.recognizers;
+    }
+
+    private List<TokenRecognizer<T, ?>> prune(Object aInSyntacticContext) {
+        SyntacticContext<T> lContext = asSyntacticContext(aInSyntacticContext);
+        List<TokenRecognizer<T, ?>> lActiveRecognizers =
+                getRecognizers(aInSyntacticContext, false);
+        List<TokenRecognizer<T, ?>> lRecognizers = lActiveRecognizers.stream()
+                .filter(aInRecognizer -> aInRecognizer.isIgnored()
+                        || aInRecognizer.getTokenId() == null
+                        || lContext.isExpected(aInRecognizer.getTokenId()))
+                .collect(Collectors.toList());
+
+        // if nothing was pruned we reuse the full list, this way we can tell
+        // there is no point in trying again with all recognizers
+        return lRecognizers.size() == lActiveRecognizers.size()
+                ? lActiveRecognizers
+                : lRecognizers;
+    }
+
+    @SuppressWarnings("unchecked")
+    private SyntacticContext<T> asSyntacticContext(Object aInContext) {
+        return (SyntacticContext<T>) aInContext;
+    }
+
+    private void pushBack(int aInLength) {
+        for (int i = charactersReadCount - 1; i >= aInLength; i--) {
+            int lCharacter = charactersRead[i];
+            if (buffered == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffered * 2);
+            }
+            buffer[buffered++] = lCharacter;
+            if (lCharacter != -1) {
+                position--;
+            }
+        }
+    }
+
+    private int peekChar() throws IOException {
+        int lResult = nextChar();
+        if (buffered == buffer.length) {
+            buffer = Arrays.copyOf(buffer, buffered * 2);
+        }
+        buffer[buffered++] = lResult;
+        if (lResult != -1) {
+            position--;
+        }
+        return lResult;
     }
 
     private int nextChar() throws IOException {
-        Integer lCharacter = buffer.isEmpty() ? null : buffer.pop();
-        return lCharacter == null ? reader.read() : lCharacter;
+        int lResult;
+        if (buffered > 0) {
+            lResult = buffer[--buffered];
+        } else if (array != null) {
+            lResult = inputIndex < inputEnd ? array[inputIndex++] : -1;
+        } else if (sequence != null) {
+            lResult = inputIndex < inputEnd
+                    ? sequence.charAt(inputIndex++)
+                    : -1;
+        } else {
+            if (inputIndex == inputEnd) {
+                fill();
+            }
+            lResult = inputIndex < inputEnd ? window[inputIndex++] : -1;
+        }
+        if (lResult == -1) {
+            endOfInputReached = true;
+        } else {
+            position++;
+        }
+        return lResult;
+    }
+
+    /**
+     * Makes sure the window holds a copy of the sequence from the next
+     * character on, returning where in the sequence the window starts. Each
+     * character is copied once, however many tokens it is scanned for.
+     */
+    private int mirror() {
+        if (window == null) {
+            window = new char[readBufferSize];
+        }
+        if (inputIndex < windowStart
+                || inputIndex >= windowStart + windowLength) {
+            windowStart = inputIndex;
+            windowLength = Math.min(window.length, inputEnd - inputIndex);
+            if (sequence instanceof String) {
+                ((String) sequence).getChars(windowStart,
+                        windowStart + windowLength, window, 0);
+            } else {
+                for (int i = 0; i < windowLength; i++) {
+                    window[i] = sequence.charAt(windowStart + i);
+                }
+            }
+        }
+        return windowStart;
+    }
+
+    private void fill() throws IOException {
+        if (window == null) {
+            // only allocated for readers, which may only be given on restart
+            window = new char[readBufferSize];
+        }
+        int lRead;
+        do {
+            lRead = reader.read(window, 0, window.length);
+        }
+        while (lRead == 0);
+        inputIndex = 0;
+        inputEnd = Math.max(lRead, 0);
+    }
+
+    /**
+     * Offset, in characters from the beginning of the input, of the last
+     * token recognized (which is not necessarily the last token returned, if
+     * tokens were peeked).
+     */
+    long getTokenStart() {
+        return tokenStart;
+    }
+
+    long getTokenEnd() {
+        return tokenEnd;
+    }
+
+    /**
+     * Whether recognizing the last token required looking at the end of the
+     * input, i.e. whether the token could have been different had the input
+     * been longer.
+     */
+    boolean isEndOfInputReached() {
+        return endOfInputReached;
+    }
+
+    /**
+     * The id of the token returned once the end of the input is reached.
+     */
+    public T getEndOfFile() {
+        return endOfFile;
+    }
+
+    @Override
+    public Iterator<Token<T, ?>> iterator() {
+        return Tokenizers.iterator(this, endOfFile);
+    }
+
+    private boolean isContextSensitive() {
+        Set<Mode<T>> lModes = new HashSet<>();
+        Deque<Mode<T>> lPending = new ArrayDeque<>();
+        lPending.push(mode);
+        while (!lPending.isEmpty()) {
+            Mode<T> lMode = lPending.pop();
+            if (!lModes.add(lMode)) {
+                continue;
+            }
+            for (TokenRecognizer<T, ?> lRecognizer : lMode.recognizers) {
+                if (lRecognizer.isContextSensitive()) {
+                    return true;
+                }
+            }
+            lPending.addAll(lMode.pushes.values());
+        }
+        return false;
+    }
+
+    private static String toString(int[] aInCharactersRead, int aInLength) {
+        if (aInCharactersRead[aInLength - 1] == -1) {
+            // last character is EOF. Remove from String.
+            aInLength--;
+        }
+        char[] lChars = new char[aInLength];
+        for (int i = 0; i < aInLength; i++) {
+            lChars[i] = (char) aInCharactersRead[i];
+        }
+        return new String(lChars);
     }
 
     public static String toString(
@@ -195,74 +1091,395 @@ public class BasicTokenizer<T> implements Tokenizer<T> {
         return new String(lChars);
     }
 
+    private static class Mode<T> {
+        private List<TokenRecognizer<T, ?>> recognizers;
+
+        private Map<T, Mode<T>> pushes = new HashMap<>();
+
+        private Set<T> pops;
+
+        // position of each recognizer (or the recognizer it was selected
+        // from) in the list of recognizers
+        private Map<TokenRecognizer<T, ?>, Integer> kinds =
+                new IdentityHashMap<>();
+
+        private Map<Object, List<TokenRecognizer<T, ?>>> recognizersByContext =
+                new HashMap<>();
+
+        private Map<Object, List<TokenRecognizer<T, ?>>>
+                prunedRecognizersByContext = new HashMap<>();
+
+        // see BasicTokenizer.Builder#dispatch(boolean)
+        private Map<List<TokenRecognizer<T, ?>>, TokenRecognizer<T, ?>[][]>
+                dispatchTables = new IdentityHashMap<>();
+
+        private Mode(List<TokenRecognizer<T, ?>> aInRecognizers,
+                     Set<T> aInPops) {
+            recognizers = aInRecognizers;
+            pops = aInPops;
+            for (int i = 0; i < aInRecognizers.size(); i++) {
+                kinds.put(aInRecognizers.get(i), i);
+            }
+        }
+    }
+
     public static class Builder<T> {
         private T endOfFile;
 
-        private List<Supplier<? extends TokenRecognizer<T, ?>>> custom =
-                new ArrayList<>();
+        private Map<String, ModeDefinition<T>> modes = new LinkedHashMap<>();
+
+        private ModeDefinition<T> currentMode;
+
+        private boolean pruneUnexpected;
+
+        private boolean cacheConditions;
+
+        private int lookahead = 4;
+
+        private T errorToken;
 
-        public Builder() {}
+        private boolean stackTraces = true;
+
+        private int pipelineCapacity = 1024;
+
+        private boolean streaming;
+
+        private StringInterner interner;
+
+        private boolean trivia;
+
+        private int readBufferSize = 8192;
+
+        private int maxTokenLength = Integer.MAX_VALUE;
+
+        private boolean dispatch;
+
+        public Builder() {
+            mode(DEFAULT_MODE);
+        }
 
         public Builder<T> endOfFile(T aInToken) {
             endOfFile = aInToken;
             return this;
         }
 
+        /**
+         * When enabled, and the syntactic context passed to the tokenizer is a
+         * {@link SyntacticContext}, recognizers for tokens that are not
+         * expected in that context are not tried. Note that this can change
+         * how the input is split, e.g. "==" is read as "=" if only the latter
+         * is expected. If no expected token matches, all recognizers are
+         * tried.
+         */
+        public Builder<T> pruneUnexpected(boolean aInPrune) {
+            pruneUnexpected = aInPrune;
+            return this;
+        }
+
+        /**
+         * When enabled, the recognizers to use in a given syntactic context
+         * (see {@link TokenRecognizer#forContext(Object)}) are computed once
+         * and cached by context, so conditions of conditional recognizers are
+         * not evaluated again for that context. Conditions must then depend
+         * on the context alone.
+         */
+        public Builder<T> cacheConditions(boolean aInCache) {
+            cacheConditions = aInCache;
+            return this;
+        }
+
+        /**
+         * Initial capacity of the buffer holding tokens peeked ahead of time
+         * and tokens consumed since the last call to
+         * {@link Tokenizer#mark()}. The buffer grows if needed.
+         */
+        public Builder<T> lookahead(int aInCapacity) {
+            lookahead = aInCapacity;
+            return this;
+        }
+
+        /**
+         * When specified, unrecognized input does not cause an
+         * {@link UnrecognizedCharacterSequenceException}. Instead, a token
+         * with this id is returned, carrying the offending character sequence
+         * and, as its value, the reason for the failure. Tokenizing continues
+         * after that sequence, so tokens never overlap (whereas after an
+         * exception it continues after the first character).
+         */
+        public Builder<T> errorToken(T aInToken) {
+            errorToken = aInToken;
+            return this;
+        }
+
+        /**
+         * Whether {@link UnrecognizedCharacterSequenceException}s thrown by
+         * the tokenizer fill in their stack traces. Defaults to true.
+         */
+        public Builder<T> stackTraces(boolean aInStackTraces) {
+            stackTraces = aInStackTraces;
+            return this;
+        }
+
+        /**
+         * Maximum number of tokens a tokenizer created with
+         * {@link #buildPipelined(Reader)} recognizes ahead of its consumer.
+         */
+        public Builder<T> pipelineCapacity(int aInCapacity) {
+            pipelineCapacity = aInCapacity;
+            return this;
+        }
+
+        /**
+         * In streaming mode, tokens consumed with
+         * {@link Tokenizer#nextToken(Object)} (but not those peeked first) are
+         * returned through a single {@link MutableToken} that is overwritten
+         * by the following call to the tokenizer. This avoids allocating
+         * anything per token, for consumers that don't hold on to them.
+         */
+        public Builder<T> streaming(boolean aInStreaming) {
+            streaming = aInStreaming;
+            return this;
+        }
+
+        /**
+         * Shares a single string instance among tokens with the same text,
+         * e.g. repeated identifiers. The interner may be shared by several
+         * builders and used from several threads.
+         */
+        public Builder<T> intern(StringInterner aInInterner) {
+            interner = aInInterner;
+            return this;
+        }
+
+        /**
+         * Records the ignored tokens (e.g. white spaces and comments) found
+         * before each token, which can then be retrieved from it. This lets
+         * tools such as formatters reconstruct the input.
+         */
+        public Builder<T> trivia(boolean aInRecord) {
+            trivia = aInRecord;
+            return this;
+        }
+
+        /**
+         * Only tries, for each token, the recognizers that accept its first
+         * character, looking them up in a table built ahead of time for ASCII
+         * characters. This saves testing every recognizer against the first
+         * character of every token, which adds up with many recognizers.
+         * Recognizers that are not context sensitive must only depend on the
+         * characters tested since they were last reset.
+         */
+        public Builder<T> dispatch(boolean aInDispatch) {
+            dispatch = aInDispatch;
+            return this;
+        }
+
+        /**
+         * Number of characters read at once from readers.
+         */
+        public Builder<T> readBufferSize(int aInSize) {
+            if (aInSize < 1) {
+                throw new IllegalArgumentException(
+                        "Buffer size must be positive: " + aInSize);
+            }
+            readBufferSize = aInSize;
+            return this;
+        }
+
+        /**
+         * Longest token that can be recognized. Longer ones are reported as
+         * unrecognized character sequences, which bounds the memory used per
+         * token. Going past the limit after a match that fits in it is not an
+         * error: the match is returned, like when no longer match is found.
+         * Ignored tokens that don't have their text retained (see
+         * {@link TokenRecognizer#isCommitted()}) are not limited.
+         */
+        public Builder<T> maxTokenLength(int aInLength) {
+            if (aInLength < 1) {
+                throw new IllegalArgumentException(
+                        "Maximum token length must be positive: " + aInLength);
+            }
+            maxTokenLength = aInLength;
+            return this;
+        }
+
         public <V> Builder<T> recognize(
                 Supplier<? extends TokenRecognizer<T, V>>
                         aInRecognizerSupplier) {
-            custom.add(aInRecognizerSupplier);
+            currentMode.recognizers.add(aInRecognizerSupplier);
             return this;
         }
 
-        public BasicTokenizer<T> build(Reader aInReader) {
-            if (endOfFile == null) {
-                throw new RuntimeException(
-                    "End of file token must be specified");
+        /**
+         * Starts (or resumes) the definition of a lexer mode. Recognizers and
+         * mode transitions specified after this call belong to that mode, and
+         * only the recognizers of the current mode are tried for each token.
+         * The tokenizer starts in {@link #DEFAULT_MODE}, which is also the one
+         * being defined when the builder is created.
+         */
+        public Builder<T> mode(String aInName) {
+            currentMode = modes.computeIfAbsent(
+                    aInName, aInKey -> new ModeDefinition<>());
+            return this;
+        }
+
+        /**
+         * Enters mode {@code aInMode} after a token {@code aInTokenId} is
+         * recognized in the mode being defined. Ignored tokens can't switch
+         * modes.
+         */
+        public Builder<T> pushMode(T aInTokenId, String aInMode) {
+            currentMode.pushes.put(aInTokenId, aInMode);
+            return this;
+        }
+
+        /**
+         * Returns to the previous mode after a token {@code aInTokenId} is
+         * recognized in the mode being defined. Ignored tokens can't switch
+         * modes.
+         */
+        public Builder<T> popMode(T aInTokenId) {
+            currentMode.pops.add(aInTokenId);
+            return this;
+        }
+
+        boolean hasModes() {
+            return modes.size() > 1;
+        }
+
+        boolean hasTrivia() {
+            return trivia;
+        }
+
+        /**
+         * Whether tokenizers built may recognize tokens differently depending
+         * on the syntactic context.
+         */
+        boolean isContextSensitive() {
+            if (pruneUnexpected) {
+                return true;
             }
+            Set<String> lModes = new HashSet<>();
+            Deque<String> lPending = new ArrayDeque<>();
+            lPending.push(DEFAULT_MODE);
+            while (!lPending.isEmpty()) {
+                String lName = lPending.pop();
+                ModeDefinition<T> lMode = modes.get(lName);
+                if (lMode == null || !lModes.add(lName)) {
+                    continue;
+                }
+                for (Supplier<? extends TokenRecognizer<T, ?>> lSupplier
+                        : lMode.recognizers) {
+                    if (lSupplier.get().isContextSensitive()) {
+                        return true;
+                    }
+                }
+                lPending.addAll(lMode.pushes.values());
+            }
+            return false;
+        }
 
-            List<TokenRecognizer<T, ?>> lRecognizers =
-                    custom.stream().map(Supplier::get)
-                            .collect(Collectors.toList());
+        public BasicTokenizer<T> build(Reader aInReader) {
+            return build(aInReader, streaming);
+        }
 
-            // TODO: There's no reason why these can't be pooled and reused.
-            return new BasicTokenizer<>(lRecognizers, aInReader, endOfFile);
+        /**
+         * Builds a tokenizer that reads {@code aInInput} directly, without
+         * going through a {@link Reader}. The input must not change while it
+         * is tokenized.
+         */
+        public BasicTokenizer<T> build(CharSequence aInInput) {
+            return build(new CharSequenceReader(aInInput));
         }
-    }
 
-    @Override
-    public Iterator<Token<T, ?>> iterator() {
-        return new Iterator<Token<T, ?>>() {
-            Token<T, ?> next;
+        public BasicTokenizer<T> build(
+                char[] aInInput, int aInOffset, int aInLength) {
+            if (aInOffset < 0 || aInLength < 0
+                    || aInOffset + aInLength > aInInput.length) {
+                throw new IndexOutOfBoundsException("Invalid range ["
+                        + aInOffset + ", " + (aInOffset + aInLength) + ")");
+            }
+            BasicTokenizer<T> lTokenizer = build(null, streaming);
+            lTokenizer.setInput(aInInput, aInOffset, 0, aInLength);
+            return lTokenizer;
+        }
 
-            boolean reachedTheEnd = false;
+        /**
+         * Builds a tokenizer over the remaining characters of
+         * {@code aInInput}, which is read directly and is not modified.
+         */
+        public BasicTokenizer<T> build(CharBuffer aInInput) {
+            return build((CharSequence) aInInput);
+        }
 
-            @Override
-            public boolean hasNext() {
-                if (next == null) {
-                    if (reachedTheEnd) { return false; }
+        BasicTokenizer<T> build(Reader aInReader, boolean aInStreaming) {
+            if (endOfFile == null) {
+                throw new RuntimeException(
+                    "End of file token must be specified");
+            }
 
-                    try {
-                        next = nextToken();
-                        reachedTheEnd = Objects.equals(next.getId(), endOfFile);
-                    }
-                    catch (IOException
-                        | UnrecognizedCharacterSequenceException e) {
-                        throw new RuntimeException(e);
+            Map<String, Mode<T>> lModes = new HashMap<>();
+            modes.forEach((aInName, aInDefinition) -> lModes.put(aInName,
+                    new Mode<>(aInDefinition.recognizers.stream()
+                            .map(Supplier::get)
+                            .collect(Collectors.toList()),
+                            new HashSet<>(aInDefinition.pops))));
+            modes.forEach((aInName, aInDefinition) ->
+                    aInDefinition.pushes.forEach((aInTokenId, aInMode) -> {
+                        Mode<T> lMode = lModes.get(aInMode);
+                        if (lMode == null) {
+                            throw new RuntimeException(
+                                    "Unknown mode \"" + aInMode + '"');
+                        }
+                        lModes.get(aInName).pushes.put(aInTokenId, lMode);
+                    }));
+            lModes.values().forEach(aInMode -> {
+                for (TokenRecognizer<T, ?> lRecognizer : aInMode.recognizers) {
+                    T lId = lRecognizer.getTokenId();
+                    if (lRecognizer.isIgnored() && lId != null
+                            && (aInMode.pushes.containsKey(lId)
+                                || aInMode.pops.contains(lId))) {
+                        // ignored tokens never reach the code switching modes
+                        throw new RuntimeException("Ignored token " + lId
+                                + " can't switch modes");
                     }
                 }
+            });
 
-                return true;
+            // TODO: There's no reason why these can't be pooled and reused.
+            return new BasicTokenizer<>(lModes.get(DEFAULT_MODE), aInReader,
+                    endOfFile, pruneUnexpected, cacheConditions, lookahead,
+                    errorToken, stackTraces, interner, trivia,
+                    readBufferSize, maxTokenLength,
+                    dispatch, aInStreaming);
+        }
+
+        /**
+         * Builds a tokenizer that recognizes tokens on a separate thread,
+         * ahead of its consumer (see {@link PipelinedTokenizer}). Tokens only
+         * depend on the syntactic context if there are context sensitive
+         * recognizers or unexpected recognizers are pruned, in which case a
+         * tokenizer running on the caller's thread is returned instead.
+         * Tokenizers built by this method never run in streaming mode.
+         * Callers that stop reading before the end of file must close the
+         * tokenizer if it is {@link AutoCloseable}.
+         */
+        public Tokenizer<T> buildPipelined(Reader aInReader) {
+            BasicTokenizer<T> lTokenizer = build(aInReader, false);
+            if (pruneUnexpected || lTokenizer.isContextSensitive()) {
+                return lTokenizer;
             }
+            return new PipelinedTokenizer<>(
+                    lTokenizer, endOfFile, pipelineCapacity);
+        }
+    }
 
-            @Override
-            public Token<T, ?> next() {
-                if (!hasNext()) { return null; }
+    private static class ModeDefinition<T> {
+        private List<Supplier<? extends TokenRecognizer<T, ?>>> recognizers =
+                new ArrayList<>();
 
-                Token<T, ?> lNext = next;
-                next = null;
-                return lNext;
-            }
-        };
+        private Map<T, String> pushes = new HashMap<>();
+
+        private Set<T> pops = new HashSet<>();
     }
 }
@@ -0,0 +1,140 @@
+/*
+ * File: CharClass.java
+ *
+ * Copyright 2020 Marcio D. Lucca
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mardlucca.parselib.tokenizer;
+
+import java.util.function.IntPredicate;
+
+/**
+ * An immutable set of characters. Membership of ASCII characters is a
+ * bitmap lookup; other characters are tested against a predicate, if any.
+ */
+public final class CharClass {
+    public static final CharClass JAVA_IDENTIFIER_START =
+            of(Character::isJavaIdentifierStart);
+
+    public static final CharClass JAVA_IDENTIFIER_PART =
+            of(Character::isJavaIdentifierPart);
+
+    // ASCII characters 0-63 and 64-127
+    private final long low;
+
+    private final long high;
+
+    // characters outside the ASCII range, or null if none
+    private final IntPredicate other;
+
+    private CharClass(long aInLow, long aInHigh, IntPredicate aInOther) {
+        low = aInLow;
+        high = aInHigh;
+        other = aInOther;
+    }
+
+    /**
+     * The characters that satisfy the given predicate.
+     */
+    public static CharClass of(IntPredicate aInPredicate) {
+        long lLow = 0;
+        long lHigh = 0;
+        for (int c = 0; c < 64; c++) {
+            if (aInPredicate.test(c)) {
+                lLow |= 1L << c;
+            }
+            if (aInPredicate.test(c + 64)) {
+                lHigh |= 1L << c;
+            }
+        }
+        return new CharClass(lLow, lHigh, aInPredicate);
+    }
+
+    public static CharClass chars(String aInChars) {
+        long lLow = 0;
+        long lHigh = 0;
+        StringBuilder lOther = new StringBuilder();
+        for (int i = 0; i < aInChars.length(); i++) {
+            char c = aInChars.charAt(i);
+            if (c < 64) {
+                lLow |= 1L << c;
+            } else if (c < 128) {
+                lHigh |= 1L << (c - 64);
+            } else {
+                lOther.append(c);
+            }
+        }
+        String lOtherChars = lOther.toString();
+        return new CharClass(lLow, lHigh, lOtherChars.isEmpty()
+                ? null
+                : c -> lOtherChars.indexOf(c) >= 0);
+    }
+
+    /**
+     * The characters from the first to the last, inclusive.
+     */
+    public static CharClass range(char aInFirst, char aInLast) {
+        if (aInFirst > aInLast) {
+            throw new IllegalArgumentException(
+                    "Invalid range: " + aInFirst + "-" + aInLast);
+        }
+        CharClass lAscii = of(c -> c >= aInFirst && c <= aInLast);
+        return new CharClass(lAscii.low, lAscii.high, aInLast < 128
+                ? null
+                : lAscii.other);
+    }
+
+    public CharClass or(CharClass aInOther) {
+        IntPredicate lOther = other == null
+                ? aInOther.other
+                : aInOther.other == null ? other : other.or(aInOther.other);
+        return new CharClass(
+                low | aInOther.low, high | aInOther.high, lOther);
+    }
+
+    public boolean contains(int aInChar) {
+        if (aInChar < 64) {
+            return aInChar >= 0 && (low & 1L << aInChar) != 0;
+        }
+        if (aInChar < 128) {
+            return (high & 1L << (aInChar - 64)) != 0;
+        }
+        return other != null && other.test(aInChar);
+    }
+
+    /**
+     * Length of the run of characters in this class, starting at the given
+     * offset.
+     */
+    public int run(char[] aInChars, int aInStart, int aInEnd) {
+        int i = aInStart;
+        while (i < aInEnd) {
+            char c = aInChars[i];
+            if (c < 64) {
+                if ((low & 1L << c) == 0) {
+                    break;
+                }
+            } else if (c < 128) {
+                if ((high & 1L << (c - 64)) == 0) {
+                    break;
+                }
+            } else if (other == null || !other.test(c)) {
+                break;
+            }
+            i++;
+        }
+        return i - aInStart;
+    }
+}
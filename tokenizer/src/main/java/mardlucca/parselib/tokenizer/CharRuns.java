@@ -0,0 +1,83 @@
+/*
+ * File: CharRuns.java
+ *
+ * Copyright 2020 Marcio D. Lucca
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mardlucca.parselib.tokenizer;
+
+/**
+ * Finds the length of runs of characters, for recognizers that consume them
+ * in bulk (see {@link TokenRecognizer#scan(char[], int, int)}).
+ */
+final class CharRuns {
+    // whether each ASCII character is a white space, a digit and a
+    // hexadecimal digit, as bits
+    private static final byte[] ASCII = new byte[128];
+
+    static final int WHITESPACE = 1;
+
+    static final int DIGIT = 2;
+
+    static final int HEX_DIGIT = 4;
+
+    static {
+        ASCII['\n'] = WHITESPACE;
+        ASCII['\t'] = WHITESPACE;
+        ASCII[' '] = WHITESPACE;
+        for (int c = 0; c < ASCII.length; c++) {
+            if (c >= '0' && c <= '9') {
+                ASCII[c] |= DIGIT | HEX_DIGIT;
+            }
+            if (c >= 'a' && c <= 'f' || c >= 'A' && c <= 'F') {
+                ASCII[c] |= HEX_DIGIT;
+            }
+        }
+    }
+
+    private CharRuns() {
+    }
+
+    /**
+     * Length of the run of ASCII characters in the given class, starting at
+     * the given offset.
+     */
+    static int asciiRun(char[] aInChars, int aInStart, int aInEnd,
+                        int aInClass) {
+        int i = aInStart;
+        while (i < aInEnd && aInChars[i] < 128
+                && (ASCII[aInChars[i]] & aInClass) != 0) {
+            i++;
+        }
+        return i - aInStart;
+    }
+
+    /**
+     * Length of the run of characters that are none of the given ones,
+     * starting at the given offset.
+     */
+    static int runUntil(char[] aInChars, int aInStart, int aInEnd,
+                        char aInFirst, char aInSecond, char aInThird) {
+        int i = aInStart;
+        while (i < aInEnd) {
+            char lChar = aInChars[i];
+            if (lChar == aInFirst || lChar == aInSecond || lChar == aInThird) {
+                break;
+            }
+            i++;
+        }
+        return i - aInStart;
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * File: CharSequenceReader.java
+ *
+ * Copyright 2020 Marcio D. Lucca
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mardlucca.parselib.tokenizer;
+
+import java.io.Reader;
+
+/**
+ * A reader over a {@link CharSequence} (or a range of it). Unlike
+ * {@link java.io.StringReader}, it does not copy the characters and does not
+ * synchronize on reads.
+ */
+public class CharSequenceReader extends Reader {
+    private CharSequence chars;
+
+    private int position;
+
+    private int end;
+
+    public CharSequenceReader(CharSequence aInChars) {
+        this(aInChars, 0, aInChars.length());
+    }
+
+    public CharSequenceReader(
+            CharSequence aInChars, int aInStart, int aInEnd) {
+        if (aInStart < 0 || aInEnd > aInChars.length() || aInStart > aInEnd) {
+            throw new IndexOutOfBoundsException(
+                    "Invalid range [" + aInStart + ", " + aInEnd + ")");
+        }
+        chars = aInChars;
+        position = aInStart;
+        end = aInEnd;
+    }
+
+    @Override
+    public int read() {
+        return position < end ? chars.charAt(position++) : -1;
+    }
+
+    @Override
+    public int read(char[] aInBuffer, int aInOffset, int aInLength) {
+        if (position >= end) {
+            return -1;
+        }
+
+        int lLength = Math.min(aInLength, end - position);
+        if (chars instanceof String) {
+            ((String) chars).getChars(
+                    position, position + lLength, aInBuffer, aInOffset);
+        } else {
+            for (int i = 0; i < lLength; i++) {
+                aInBuffer[aInOffset + i] = chars.charAt(position + i);
+            }
+        }
+        position += lLength;
+        return lLength;
+    }
+
+    CharSequence getChars() {
+        return chars;
+    }
+
+    int getPosition() {
+        return position;
+    }
+
+    int getEnd() {
+        return end;
+    }
+
+    @Override
+    public void close() {
+        position = end;
+    }
+}
@@ -130,6 +130,11 @@ public class CharacterLiteralRecognizer<T>
         state = State.INITIAL;
     }
 
+    @Override
+    protected boolean isValueLazy() {
+        return true;
+    }
+
     @Override
     public Character getValue(String aInCharSequence) {
         String lString = StringEscapeUtils.unescapeJava(
@@ -25,6 +25,10 @@ public class ConditionalRecognizer<T, V>
     private TokenRecognizer<T, V> delegate;
     private Predicate<Object> predicate;
 
+    // whether the predicate was already evaluated for the current token
+    private boolean evaluated;
+    private boolean active;
+
     ConditionalRecognizer(TokenRecognizer<T, V> aInDelegate,
                           Predicate<Object> aInPredicate) {
         delegate = aInDelegate;
@@ -33,12 +37,45 @@ public class ConditionalRecognizer<T, V>
 
     @Override
     public MatchResult test(int aInChar, Object aInSyntacticContext) {
-        if (!predicate.test(aInSyntacticContext)) {
+        if (!evaluated) {
+            // the context does not change while a token is being recognized,
+            // so we only need to check the predicate once per token
+            active = predicate.test(aInSyntacticContext);
+            evaluated = true;
+        }
+        if (!active) {
             return MatchResult.NOT_A_MATCH;
         }
         return delegate.test(aInChar, aInSyntacticContext);
     }
 
+    @Override
+    public TokenRecognizer<T, V> forContext(Object aInSyntacticContext) {
+        return predicate.test(aInSyntacticContext)
+                ? delegate.forContext(aInSyntacticContext)
+                : null;
+    }
+
+    @Override
+    public boolean isCommitted() {
+        return delegate.isCommitted();
+    }
+
+    @Override
+    public int scan(char[] aInChars, int aInStart, int aInEnd) {
+        return delegate.scan(aInChars, aInStart, aInEnd);
+    }
+
+    @Override
+    public boolean isTextRequired() {
+        return delegate.isTextRequired();
+    }
+
+    @Override
+    public boolean isContextSensitive() {
+        return true;
+    }
+
     @Override
     public Token<T, V> getToken(String aInCharSequence) {
         return delegate.getToken(aInCharSequence);
@@ -47,6 +84,7 @@ public class ConditionalRecognizer<T, V>
     @Override
     public void reset() {
         delegate.reset();
+        evaluated = false;
     }
 
     @Override
@@ -58,4 +96,9 @@ public class ConditionalRecognizer<T, V>
     public boolean isIgnored() {
         return delegate.isIgnored();
     }
+
+    @Override
+    public T getTokenId() {
+        return delegate.getTokenId();
+    }
 }
@@ -23,8 +23,24 @@ public class IdentifierRecognizer<T> extends BaseTokenRecognizer<T, String> {
 
     private boolean matchFailure = false;
 
+    private CharClass start;
+
+    private CharClass part;
+
     public IdentifierRecognizer(T aInToken) {
+        this(aInToken, CharClass.JAVA_IDENTIFIER_START,
+                CharClass.JAVA_IDENTIFIER_PART);
+    }
+
+    /**
+     * Recognizes identifiers made of a character in the start class,
+     * followed by any number of characters in the part class.
+     */
+    public IdentifierRecognizer(
+            T aInToken, CharClass aInStart, CharClass aInPart) {
         super(aInToken);
+        start = aInStart;
+        part = aInPart;
     }
 
     @Override
@@ -37,10 +53,10 @@ public class IdentifierRecognizer<T> extends BaseTokenRecognizer<T, String> {
         MatchResult lResult;
 
         if (index == 0) {
-            lResult = Character.isJavaIdentifierStart(aInChar) ?
+            lResult = start.contains(aInChar) ?
                 MatchResult.MATCH : MatchResult.NOT_A_MATCH;
         } else {
-            lResult = Character.isJavaIdentifierPart(aInChar) ?
+            lResult = part.contains(aInChar) ?
                 MatchResult.MATCH : MatchResult.NOT_A_MATCH;
         }
 
@@ -51,6 +67,13 @@ public class IdentifierRecognizer<T> extends BaseTokenRecognizer<T, String> {
         return lResult;
     }
 
+    @Override
+    public int scan(char[] aInChars, int aInStart, int aInEnd) {
+        return index >= 0 && !matchFailure
+                ? part.run(aInChars, aInStart, aInEnd)
+                : 0;
+    }
+
     @Override
     public void reset() {
         super.reset();
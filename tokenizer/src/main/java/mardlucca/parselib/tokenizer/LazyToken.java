@@ -0,0 +1,45 @@
+/*
+ * File: LazyToken.java
+ *
+ * Copyright 2020 Marcio D. Lucca
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mardlucca.parselib.tokenizer;
+
+/**
+ * A token whose value is only computed when first asked for.
+ */
+abstract class LazyToken<T, V> extends Token<T, V> {
+    private static final Object UNRESOLVED = new Object();
+
+    private Object value = UNRESOLVED;
+
+    LazyToken(T aInId, String aInCharSequence) {
+        super(aInId, aInCharSequence, null);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V getValue() {
+        Object lValue = value;
+        if (lValue == UNRESOLVED) {
+            lValue = computeValue();
+            value = lValue;
+        }
+        return (V) lValue;
+    }
+
+    protected abstract V computeValue();
+}
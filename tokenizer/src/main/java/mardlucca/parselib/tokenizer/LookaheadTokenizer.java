@@ -0,0 +1,47 @@
+/*
+ * File: LookaheadTokenizer.java
+ *
+ * Copyright 2020 Marcio D. Lucca
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mardlucca.parselib.tokenizer;
+
+import java.io.IOException;
+
+/**
+ * A tokenizer that can look more than one token ahead and move back to a
+ * position marked earlier. Callers that need either check whether a
+ * {@link Tokenizer} implements this interface.
+ */
+public interface LookaheadTokenizer<T> extends Tokenizer<T> {
+    /**
+     * Peeks at the token {@code aInDistance} positions ahead without consuming
+     * it, 1 being the token returned by the next call to
+     * {@link #nextToken(Object)}.
+     */
+    Token<T, ?> peekToken(int aInDistance, Object aInSyntacticContext)
+            throws IOException, UnrecognizedCharacterSequenceException;
+
+    /**
+     * Marks the current position. Tokens consumed after this call are
+     * retained until {@link #reset()} moves back to this position or
+     * {@link #unmark()} discards the mark.
+     */
+    void mark();
+
+    void reset();
+
+    void unmark();
+}
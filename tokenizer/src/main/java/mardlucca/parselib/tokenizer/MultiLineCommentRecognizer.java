@@ -30,13 +30,35 @@ public class MultiLineCommentRecognizer<T>
 
     private String endCharSequence;
 
-    private String substring;
+    private boolean nested;
+
+    // failure functions (as in Knuth-Morris-Pratt) for the initial and end
+    // sequences. failure[i] is the length of the longest proper prefix of
+    // sequence[0..i] that is also a suffix of it.
+    private int[] initialFailure;
+
+    private int[] endFailure;
+
+    // number of characters of the initial/end sequences matched so far while
+    // reading the body of the comment
+    private int initialMatched;
+
+    private int endMatched;
+
+    private int depth;
 
     private int index;
 
     public MultiLineCommentRecognizer(
             String aInInitialCharSequence,
             String aInEndCharSequence) {
+        this(aInInitialCharSequence, aInEndCharSequence, false);
+    }
+
+    public MultiLineCommentRecognizer(
+            String aInInitialCharSequence,
+            String aInEndCharSequence,
+            boolean aInNested) {
         super(null);
         initialCharSequence = StringUtils.isBlank(aInInitialCharSequence)
                 ? DEFAULT_START_CHAR_SEQUENCE
@@ -44,6 +66,9 @@ public class MultiLineCommentRecognizer<T>
         endCharSequence = StringUtils.isBlank(aInEndCharSequence)
                 ? StringUtils.reverse(initialCharSequence)
                 : aInEndCharSequence;
+        nested = aInNested;
+        initialFailure = failureFunction(initialCharSequence);
+        endFailure = failureFunction(endCharSequence);
     }
 
     @Override
@@ -63,7 +88,9 @@ public class MultiLineCommentRecognizer<T>
             index++;
             if (index >= initialCharSequence.length()) {
                 state = State.LOOKING_FOR_END_SEQUENCE;
-                substring = "";
+                depth = 1;
+                initialMatched = 0;
+                endMatched = 0;
             }
             return MatchResult.PARTIAL_MATCH;
         }
@@ -79,20 +106,45 @@ public class MultiLineCommentRecognizer<T>
             return MatchResult.FAILURE;
         }
 
-        if (substring.length() == endCharSequence.length()) {
-            // discard first character
-            substring = substring.substring(1);
+        endMatched = advance(endCharSequence, endFailure, endMatched, aInChar);
+        if (endMatched == endCharSequence.length()) {
+            depth--;
+            if (depth == 0) {
+                state = State.FINISHED;
+                return MatchResult.MATCH;
+            }
+            initialMatched = 0;
+            endMatched = 0;
+            return MatchResult.PARTIAL_MATCH;
         }
-        substring += (char) aInChar;
 
-        if (substring.equals(endCharSequence)) {
-            state = State.FINISHED;
-            return MatchResult.MATCH;
+        if (nested) {
+            initialMatched = advance(initialCharSequence, initialFailure,
+                    initialMatched, aInChar);
+            if (initialMatched == initialCharSequence.length()) {
+                depth++;
+                initialMatched = 0;
+                endMatched = 0;
+            }
         }
 
         return MatchResult.PARTIAL_MATCH;
     }
 
+    @Override
+    public int scan(char[] aInChars, int aInStart, int aInEnd) {
+        if (state != State.LOOKING_FOR_END_SEQUENCE
+                || endMatched > 0
+                || nested && initialMatched > 0) {
+            return 0;
+        }
+        // characters that can't start the end (or, if nested, the initial)
+        // sequence don't change anything
+        char lEnd = endCharSequence.charAt(0);
+        return CharRuns.runUntil(aInChars, aInStart, aInEnd, lEnd, lEnd,
+                nested ? initialCharSequence.charAt(0) : lEnd);
+    }
+
     @Override
     public void reset() {
         super.reset();
@@ -110,6 +162,33 @@ public class MultiLineCommentRecognizer<T>
         return true;
     }
 
+    @Override
+    public boolean isCommitted() {
+        // once the start sequence is read, this is a comment, closed or not
+        return state == State.LOOKING_FOR_END_SEQUENCE;
+    }
+
+    private static int advance(
+            String aInSequence, int[] aInFailure, int aInMatched, int aInChar) {
+        while (aInMatched > 0 && aInSequence.charAt(aInMatched) != aInChar) {
+            aInMatched = aInFailure[aInMatched - 1];
+        }
+        return aInSequence.charAt(aInMatched) == aInChar
+                ? aInMatched + 1
+                : aInMatched;
+    }
+
+    private static int[] failureFunction(String aInSequence) {
+        int[] lFailure = new int[aInSequence.length()];
+        int lMatched = 0;
+        for (int i = 1; i < aInSequence.length(); i++) {
+            lMatched = advance(aInSequence, lFailure, lMatched,
+                    aInSequence.charAt(i));
+            lFailure[i] = lMatched;
+        }
+        return lFailure;
+    }
+
     private enum State {
         READING_START_SEQUENCE,
         LOOKING_FOR_END_SEQUENCE,
@@ -0,0 +1,138 @@
+/*
+ * File: MutableToken.java
+ *
+ * Copyright 2020 Marcio D. Lucca
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mardlucca.parselib.tokenizer;
+
+/**
+ * A token cursor returned by tokenizers in streaming mode (see
+ * {@link BasicTokenizer.Builder#streaming(boolean)}). The same instance is
+ * overwritten in place by every call to the tokenizer, so it is only valid
+ * until then. The character sequence and the value are only built if asked
+ * for.
+ */
+public class MutableToken<T> extends Token<T, Object> {
+    private T id;
+
+    private TokenRecognizer<T, ?> recognizer;
+
+    private int[] characters;
+
+    private int length;
+
+    private long start;
+
+    private long end;
+
+    private String charSequence;
+
+    private Object value;
+
+    private boolean resolved;
+
+    private StringInterner interner;
+
+    private CharSequence text = new CharSequence() {
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int aInIndex) {
+            if (aInIndex < 0 || aInIndex >= length) {
+                throw new IndexOutOfBoundsException(String.valueOf(aInIndex));
+            }
+            return (char) characters[aInIndex];
+        }
+
+        @Override
+        public CharSequence subSequence(int aInStart, int aInEnd) {
+            return getCharSequence().subSequence(aInStart, aInEnd);
+        }
+
+        @Override
+        public String toString() {
+            return getCharSequence();
+        }
+    };
+
+    MutableToken(StringInterner aInInterner) {
+        super(null, null, null);
+        interner = aInInterner;
+    }
+
+    void set(T aInId, TokenRecognizer<T, ?> aInRecognizer,
+             int[] aInCharacters, int aInLength, long aInStart, long aInEnd) {
+        id = aInId;
+        recognizer = aInRecognizer;
+        characters = aInCharacters;
+        length = aInLength;
+        start = aInStart;
+        end = aInEnd;
+        charSequence = null;
+        value = null;
+        resolved = false;
+    }
+
+    @Override
+    public T getId() {
+        return id;
+    }
+
+    /**
+     * A view of the characters of this token, which does not copy them.
+     */
+    public CharSequence getText() {
+        return text;
+    }
+
+    @Override
+    public String getCharSequence() {
+        if (charSequence == null && recognizer != null) {
+            charSequence = interner == null
+                    ? new String(characters, 0, length)
+                    : interner.intern(characters, length);
+        }
+        return charSequence;
+    }
+
+    @Override
+    public Object getValue() {
+        if (!resolved) {
+            value = recognizer == null
+                    ? null
+                    : recognizer.getToken(getCharSequence()).getValue();
+            resolved = true;
+        }
+        return value;
+    }
+
+    /**
+     * Offset of the first character of this token in the input.
+     */
+    public long getStart() {
+        return start;
+    }
+
+    /**
+     * Offset right after the last character of this token in the input.
+     */
+    public long getEnd() {
+        return end;
+    }
+}
@@ -19,12 +19,22 @@
 package mardlucca.parselib.tokenizer;
 
 public class NumberLiteralRecognizer<T> extends BaseTokenRecognizer<T, Number> {
+    private static final int INT = 0;
+
+    private static final int LONG = 1;
+
+    private static final int FLOAT = 2;
+
+    private static final int DOUBLE = 3;
+
     private State state = State.INITIAL;
 
     private int radix;
 
     private Class<?> type = int.class;
 
+    private int matchedValueState;
+
     public NumberLiteralRecognizer(T aInToken) {
         super(aInToken);
     }
@@ -35,29 +45,81 @@ public class NumberLiteralRecognizer<T> extends BaseTokenRecognizer<T, Number> {
         state = State.INITIAL;
         type = int.class;
         radix = 10;
+        matchedValueState = 0;
+    }
+
+    @Override
+    protected boolean isValueLazy() {
+        return true;
     }
 
     @Override
     public Number getValue(String aInCharSequence) {
-        if (type == int.class) {
+        return getValue(aInCharSequence, getValueState());
+    }
+
+    @Override
+    protected int getValueState() {
+        // the token may end before the characters read last, e.g. "1" in
+        // "1e+", which must not turn it into a double
+        return matchedValueState;
+    }
+
+    private int currentValueState() {
+        // the type in the lower bits and the radix above them
+        int lType = type == int.class ? INT
+                : type == long.class ? LONG
+                : type == float.class ? FLOAT
+                : DOUBLE;
+        return radix << 2 | lType;
+    }
+
+    @Override
+    protected Number getValue(String aInCharSequence, int aInState) {
+        int lType = aInState & 3;
+        int lRadix = aInState >>> 2;
+        if (lType == INT) {
             return Integer.parseInt(getCharSequenceForParsing(
-                    aInCharSequence , radix), radix);
+                    aInCharSequence , lRadix), lRadix);
         }
-        if (type == float.class) {
+        if (lType == FLOAT) {
             return Float.parseFloat(aInCharSequence);
         }
-        if (type == long.class) {
+        if (lType == LONG) {
             return Long.parseLong(
                     aInCharSequence.substring(
-                            radix == 16 ? 2 : radix == 8 ? 1 : 0,
+                            lRadix == 16 ? 2 : lRadix == 8 ? 1 : 0,
                         aInCharSequence.length() - 1),
-                    radix);
+                    lRadix);
         }
         return Double.parseDouble(aInCharSequence);
     }
 
+    @Override
+    public int scan(char[] aInChars, int aInStart, int aInEnd) {
+        switch (state) {
+            case INTEGRAL_NUMBER_WITHOUT_EXPONENT:
+            case FLOATING_POINT_NUMBER_WITHOUT_EXPONENT:
+                return CharRuns.asciiRun(aInChars, aInStart, aInEnd,
+                        CharRuns.DIGIT);
+            case HEXADECIMAL_NUMBER:
+                return CharRuns.asciiRun(aInChars, aInStart, aInEnd,
+                        CharRuns.HEX_DIGIT);
+            default:
+                return 0;
+        }
+    }
+
     @Override
     public MatchResult test(int aInChar, Object aInSyntacticContext) {
+        MatchResult lResult = advance(aInChar);
+        if (lResult == MatchResult.MATCH) {
+            matchedValueState = currentValueState();
+        }
+        return lResult;
+    }
+
+    private MatchResult advance(int aInChar) {
         switch (state) {
             case INITIAL:
                 return handleInitialState(aInChar);
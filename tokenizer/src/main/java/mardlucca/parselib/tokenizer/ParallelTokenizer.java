@@ -0,0 +1,297 @@
+/*
+ * File: ParallelTokenizer.java
+ *
+ * Copyright 2020 Marcio D. Lucca
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mardlucca.parselib.tokenizer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.IntPredicate;
+
+/**
+ * Tokenizes large inputs in parallel. The input is split into chunks right
+ * after characters accepted by a boundary predicate (e.g. new lines, for
+ * inputs with one statement per line) and each chunk is tokenized on its own
+ * by a {@link BasicTokenizer} built from the given builder.
+ * <p>
+ * Chunks are then stitched together in order. Tokens at the end of a chunk
+ * whose recognition depended on the chunk ending there are re-tokenized
+ * serially from the last token known to be good, until the result lines up
+ * with the tokens of a following chunk again. This keeps the result identical
+ * to tokenizing the whole input serially, even if a boundary turns out not to
+ * be safe (e.g. a new line inside a string), though at a cost.
+ * <p>
+ * The recognizers must not depend on the syntactic context (chunks are
+ * tokenized without one) and lexer modes are not supported, as the mode at
+ * the beginning of a chunk can't be known.
+ */
+public class ParallelTokenizer<T> {
+    private BasicTokenizer.Builder<T> builder;
+
+    private IntPredicate boundary;
+
+    private int chunkSize;
+
+    public ParallelTokenizer(
+            BasicTokenizer.Builder<T> aInBuilder,
+            IntPredicate aInBoundary,
+            int aInChunkSize) {
+        if (aInBuilder.hasModes()) {
+            throw new IllegalArgumentException(
+                    "Lexer modes are not supported by parallel tokenization");
+        }
+        if (aInBuilder.hasTrivia()) {
+            throw new IllegalArgumentException(
+                    "Trivia are not supported by parallel tokenization");
+        }
+        if (aInBuilder.isContextSensitive()) {
+            throw new IllegalArgumentException("Recognizers depending on the "
+                    + "syntactic context are not supported by parallel "
+                    + "tokenization");
+        }
+        if (aInChunkSize < 1) {
+            throw new IllegalArgumentException(
+                    "Chunk size must be positive: " + aInChunkSize);
+        }
+        builder = aInBuilder;
+        boundary = aInBoundary;
+        chunkSize = aInChunkSize;
+    }
+
+    public TokenTape<T> tokenize(CharSequence aInInput) {
+        return tokenize(aInInput, ForkJoinPool.commonPool());
+    }
+
+    public TokenTape<T> tokenize(CharSequence aInInput, ForkJoinPool aInPool) {
+        int[] lBoundaries = split(aInInput);
+        List<ForkJoinTask<Chunk<T>>> lTasks = new ArrayList<>();
+        for (int i = 0; i < lBoundaries.length - 1; i++) {
+            int lStart = lBoundaries[i];
+            int lEnd = lBoundaries[i + 1];
+            lTasks.add(aInPool.submit(() ->
+                    tokenize(aInInput, lStart, lEnd)));
+        }
+
+        return stitch(aInInput, lTasks);
+    }
+
+    private int[] split(CharSequence aInInput) {
+        int lLength = aInInput.length();
+        int[] lBoundaries = new int[lLength / chunkSize + 2];
+        int lCount = 1;
+        for (int i = chunkSize; i < lLength; i++) {
+            if (boundary.test(aInInput.charAt(i - 1))) {
+                lBoundaries[lCount++] = i;
+                i += chunkSize - 1;
+            }
+        }
+        lBoundaries[lCount++] = lLength;
+        return Arrays.copyOf(lBoundaries, lCount);
+    }
+
+    private Chunk<T> tokenize(CharSequence aInInput, int aInStart, int aInEnd) {
+        Chunk<T> lChunk = new Chunk<>(aInStart);
+        Lexer<T> lLexer = new Lexer<>(builder, aInInput, aInStart, aInEnd);
+        while (lLexer.next()) {
+            lChunk.add(lLexer);
+        }
+        lChunk.endOfFile = lLexer.item;
+        return lChunk;
+    }
+
+    private TokenTape<T> stitch(
+            CharSequence aInInput, List<ForkJoinTask<Chunk<T>>> aInTasks) {
+        Chunk<T> lTape = new Chunk<>(0);
+        int lChunkIndex = 0;
+        int lFrom = 0;
+        while (true) {
+            Chunk<T> lChunk = aInTasks.get(lChunkIndex).join();
+            if (lChunkIndex == aInTasks.size() - 1) {
+                // the end of the last chunk is the end of the input, so all
+                // its tokens are good
+                lTape.addAll(lChunk, lFrom, lChunk.size);
+                lTape.add(lChunk.endOfFile, aInInput.length(),
+                        aInInput.length(), true);
+                break;
+            }
+
+            lTape.addAll(lChunk, lFrom, lChunk.good);
+            int lGoodUntil = lTape.size == 0 ? 0 : lTape.ends[lTape.size - 1];
+            if (lChunk.good == lFrom && lFrom == 0) {
+                // nothing good in this chunk, but we know where it started
+                lGoodUntil = Math.max(lGoodUntil, lChunk.start);
+            }
+
+            // tokenize serially from the last good position until we reach a
+            // position where a following chunk is known to be good
+            Lexer<T> lLexer = new Lexer<>(
+                    builder, aInInput, lGoodUntil, aInInput.length());
+            lFrom = -1;
+            while (lFrom < 0) {
+                if (!lLexer.next()) {
+                    // reached the end of the input
+                    lTape.add(lLexer.item, aInInput.length(),
+                            aInInput.length(), true);
+                    return lTape.toTape();
+                }
+                lTape.add(lLexer);
+
+                while (lFrom < 0 && lChunkIndex < aInTasks.size() - 1) {
+                    Chunk<T> lNext = aInTasks.get(lChunkIndex + 1).join();
+                    lFrom = lNext.resume(lLexer.end);
+                    if (lFrom >= 0 || lLexer.end <= lNext.goodEnd()) {
+                        // either we lined up with this chunk, or we may still
+                        // line up with it further ahead
+                        break;
+                    }
+                    // we went past all the good tokens of the next chunk
+                    lChunkIndex++;
+                }
+                if (lFrom >= 0) {
+                    lChunkIndex++;
+                }
+            }
+        }
+        return lTape.toTape();
+    }
+
+    /**
+     * Tokenizes a range of the input, keeping track of the offsets of each
+     * token.
+     */
+    private static class Lexer<T> {
+        private BasicTokenizer<T> tokenizer;
+
+        private int base;
+
+        private Object item;
+
+        private int start;
+
+        private int end;
+
+        private boolean endOfInputReached;
+
+        private Lexer(BasicTokenizer.Builder<T> aInBuilder,
+                      CharSequence aInInput, int aInStart, int aInEnd) {
+            tokenizer = aInBuilder.build(
+                    new CharSequenceReader(aInInput, aInStart, aInEnd), false);
+            base = aInStart;
+        }
+
+        /**
+         * Moves to the next token or error, returning false once the end of
+         * file is reached.
+         */
+        private boolean next() {
+            try {
+                item = tokenizer.nextToken();
+            }
+            catch (UnrecognizedCharacterSequenceException e) {
+                item = e;
+            }
+            catch (IOException e) {
+                // can't really happen with a CharSequenceReader
+                throw new UncheckedIOException(e);
+            }
+
+            start = base + (int) tokenizer.getTokenStart();
+            end = base + (int) tokenizer.getTokenEnd();
+            endOfInputReached = tokenizer.isEndOfInputReached();
+            return !(item instanceof Token) || !Objects.equals(
+                    ((Token<?, ?>) item).getId(), tokenizer.getEndOfFile());
+        }
+    }
+
+    private static class Chunk<T> {
+        private int start;
+
+        private Object[] items = new Object[16];
+
+        private int[] starts = new int[16];
+
+        private int[] ends = new int[16];
+
+        private int size;
+
+        // number of leading tokens that were recognized without looking past
+        // the end of the chunk
+        private int good;
+
+        private Object endOfFile;
+
+        private Chunk(int aInStart) {
+            start = aInStart;
+        }
+
+        private void add(Lexer<T> aInLexer) {
+            add(aInLexer.item, aInLexer.start, aInLexer.end,
+                    !aInLexer.endOfInputReached);
+        }
+
+        private void add(
+                Object aInItem, int aInStart, int aInEnd, boolean aInGood) {
+            if (size == items.length) {
+                items = Arrays.copyOf(items, size * 2);
+                starts = Arrays.copyOf(starts, size * 2);
+                ends = Arrays.copyOf(ends, size * 2);
+            }
+            items[size] = aInItem;
+            starts[size] = aInStart;
+            ends[size] = aInEnd;
+            size++;
+            if (aInGood && good == size - 1) {
+                good++;
+            }
+        }
+
+        private void addAll(Chunk<T> aInChunk, int aInFrom, int aInTo) {
+            for (int i = aInFrom; i < aInTo; i++) {
+                add(aInChunk.items[i], aInChunk.starts[i], aInChunk.ends[i],
+                        true);
+            }
+        }
+
+        private int goodEnd() {
+            return good == 0 ? start : ends[good - 1];
+        }
+
+        /**
+         * Given that tokenizing from the beginning of the input stopped at
+         * {@code aInPosition}, returns the index of the first token of this
+         * chunk that can be used from there on, or -1 if none is known to be
+         * good.
+         */
+        private int resume(int aInPosition) {
+            if (aInPosition == start) {
+                return 0;
+            }
+            int lIndex = Arrays.binarySearch(ends, 0, good, aInPosition);
+            return lIndex >= 0 ? lIndex + 1 : -1;
+        }
+
+        private TokenTape<T> toTape() {
+            return new TokenTape<>(items, starts, ends, size);
+        }
+    }
+}
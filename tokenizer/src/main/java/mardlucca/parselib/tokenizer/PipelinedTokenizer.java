@@ -0,0 +1,286 @@
+/*
+ * File: PipelinedTokenizer.java
+ *
+ * Copyright 2020 Marcio D. Lucca
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mardlucca.parselib.tokenizer;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Tokenizer that recognizes tokens on a separate (producer) thread, ahead of
+ * the thread consuming them (e.g. the parser). Tokens are handed over through
+ * a bounded single-producer/single-consumer ring, so the producer never gets
+ * more than its capacity ahead of the consumer. Either thread spins for a
+ * while when it has to wait for the other, and then parks until the other one
+ * unparks it, so a producer left ahead of a consumer that stopped reading
+ * does not use any CPU.
+ * <p>
+ * As tokens are recognized before the consumer asks for them, the syntactic
+ * context passed by the consumer is ignored. Use
+ * {@link BasicTokenizer.Builder#buildPipelined(java.io.Reader)}, which only
+ * pipelines tokenizers that don't depend on it.
+ * <p>
+ * The producer thread holds on to the tokenizer until it reaches the end of
+ * the input, so a tokenizer that is dropped before that must be closed (see
+ * {@link #close()}); otherwise its producer stays parked, along with the
+ * tokenizer and its input, until the JVM exits. Parsers built by
+ * {@code LRParsingTable} close the tokenizers they create.
+ */
+public class PipelinedTokenizer<T> implements Tokenizer<T>, AutoCloseable {
+    private static final AtomicInteger threadSequence = new AtomicInteger();
+
+    private static final int SPINS = 100;
+
+    private static final int YIELDS = 200;
+
+    // tokens or the exceptions thrown when recognizing them
+    private Object[] slots;
+
+    private int mask;
+
+    // index of the next slot to be consumed. Only written by the consumer.
+    private volatile long head;
+
+    // index of the next slot to be produced. Only written by the producer.
+    private volatile long tail;
+
+    private volatile boolean closed;
+
+    // set by either thread right before it parks, so the other one knows to
+    // unpark it once it made progress
+    private volatile boolean producerParked;
+
+    private volatile boolean consumerParked;
+
+    private Thread producer;
+
+    private Thread consumer;
+
+    private T endOfFile;
+
+    PipelinedTokenizer(
+            Tokenizer<T> aInTokenizer, T aInEndOfFile, int aInCapacity) {
+        int lCapacity = Integer.highestOneBit(Math.max(2, aInCapacity));
+        if (lCapacity < aInCapacity) {
+            lCapacity <<= 1;
+        }
+        slots = new Object[lCapacity];
+        mask = lCapacity - 1;
+        endOfFile = aInEndOfFile;
+
+        producer = new Thread(() -> produce(aInTokenizer),
+                "tokenizer-" + threadSequence.incrementAndGet());
+        producer.setDaemon(true);
+        producer.start();
+    }
+
+    private void produce(Tokenizer<T> aInTokenizer) {
+        long lTail = 0;
+        boolean lEnd = false;
+        while (!lEnd) {
+            Object lItem;
+            try {
+                Token<T, ?> lToken = aInTokenizer.nextToken(null);
+                lItem = lToken;
+                lEnd = Objects.equals(lToken.getId(), endOfFile);
+            }
+            catch (UnrecognizedCharacterSequenceException e) {
+                // tokenizing goes on after these
+                lItem = e;
+            }
+            catch (IOException | RuntimeException e) {
+                lItem = e;
+                lEnd = true;
+            }
+
+            for (int i = 0; lTail - head == slots.length; i++) {
+                if (closed) {
+                    return;
+                }
+                if (i < YIELDS) {
+                    backOff(i);
+                } else {
+                    producerParked = true;
+                    // the consumer may have moved on before seeing the flag
+                    if (lTail - head == slots.length && !closed) {
+                        LockSupport.park(this);
+                    }
+                    producerParked = false;
+                }
+            }
+            slots[(int) lTail & mask] = lItem;
+            tail = ++lTail;
+            if (consumerParked) {
+                LockSupport.unpark(consumer);
+            }
+        }
+    }
+
+    @Override
+    public Token<T, ?> nextToken(Object aInSyntacticContext)
+            throws IOException, UnrecognizedCharacterSequenceException {
+        long lHead = head;
+        Object lItem = await(lHead);
+        if (isLast(lItem)) {
+            // stay on the end of file (or the error that ended the input)
+            return toToken(lItem);
+        }
+
+        slots[(int) lHead & mask] = null;
+        head = lHead + 1;
+        if (producerParked) {
+            LockSupport.unpark(producer);
+        }
+        return toToken(lItem);
+    }
+
+    @Override
+    public Token<T, ?> peekToken(Object aInSyntacticContext)
+            throws IOException, UnrecognizedCharacterSequenceException {
+        return toToken(await(head));
+    }
+
+    /**
+     * Peeks at the token {@code aInDistance} positions ahead without consuming
+     * it, 1 being the token returned by the next call to
+     * {@link #nextToken(Object)}. Can't look further ahead than the capacity
+     * of the ring. Marking isn't supported, as the producer reuses the slots
+     * of consumed tokens.
+     */
+    public Token<T, ?> peekToken(int aInDistance, Object aInSyntacticContext)
+            throws IOException, UnrecognizedCharacterSequenceException {
+        if (aInDistance < 1) {
+            throw new IllegalArgumentException(
+                    "Distance must be at least 1: " + aInDistance);
+        }
+        if (aInDistance > slots.length) {
+            throw new IllegalArgumentException(
+                    "Can only peek " + slots.length + " tokens ahead");
+        }
+
+        long lIndex = head;
+        Object lItem = await(lIndex);
+        for (int i = 1; i < aInDistance && !isLast(lItem); i++) {
+            lItem = await(++lIndex);
+        }
+        return toToken(lItem);
+    }
+
+    /**
+     * The id of the token returned once the end of the input is reached.
+     */
+    public T getEndOfFile() {
+        return endOfFile;
+    }
+
+    /**
+     * Consumes up to {@code aInLength} tokens into {@code aInTokens},
+     * starting at {@code aInOffset} and stopping after the end of file token.
+     * Returns the number of tokens stored. Tokens are recognized without a
+     * syntactic context.
+     */
+    public int nextTokens(
+            Token<T, ?>[] aInTokens, int aInOffset, int aInLength)
+            throws IOException, UnrecognizedCharacterSequenceException {
+        return Tokenizers.nextTokens(
+                this, endOfFile, aInTokens, aInOffset, aInLength);
+    }
+
+    /**
+     * Consumes all remaining tokens, up to and including the end of file,
+     * handing them to {@code aInSink}. Tokens are recognized without a
+     * syntactic context.
+     */
+    public void tokenize(TokenSink<T> aInSink)
+            throws IOException, UnrecognizedCharacterSequenceException {
+        Tokenizers.tokenize(this, endOfFile, aInSink);
+    }
+
+    @Override
+    public Iterator<Token<T, ?>> iterator() {
+        return Tokenizers.iterator(this, endOfFile);
+    }
+
+    /**
+     * Stops the producer thread. Tokens not consumed yet are discarded. Must
+     * be called on tokenizers that are not read up to the end of file.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(producer);
+        if (consumerParked) {
+            LockSupport.unpark(consumer);
+        }
+    }
+
+    Thread getProducer() {
+        return producer;
+    }
+
+    private Object await(long aInIndex) {
+        for (int i = 0; tail <= aInIndex; i++) {
+            if (closed) {
+                throw new IllegalStateException("Tokenizer is closed");
+            }
+            if (i < YIELDS) {
+                backOff(i);
+            } else {
+                consumer = Thread.currentThread();
+                consumerParked = true;
+                // the producer may have moved on before seeing the flag
+                if (tail <= aInIndex && !closed) {
+                    LockSupport.park(this);
+                }
+                consumerParked = false;
+            }
+        }
+        return slots[(int) aInIndex & mask];
+    }
+
+    private static void backOff(int aInAttempt) {
+        // below SPINS the caller just checks the indexes again
+        if (aInAttempt >= SPINS) {
+            Thread.yield();
+        }
+    }
+
+    private boolean isLast(Object aInItem) {
+        return aInItem instanceof Token
+                ? Objects.equals(((Token<?, ?>) aInItem).getId(), endOfFile)
+                : !(aInItem instanceof UnrecognizedCharacterSequenceException);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Token<T, ?> toToken(Object aInItem)
+            throws IOException, UnrecognizedCharacterSequenceException {
+        if (aInItem instanceof Token) {
+            return (Token<T, ?>) aInItem;
+        }
+        if (aInItem instanceof UnrecognizedCharacterSequenceException) {
+            throw (UnrecognizedCharacterSequenceException) aInItem;
+        }
+        if (aInItem instanceof IOException) {
+            throw (IOException) aInItem;
+        }
+        throw (RuntimeException) aInItem;
+    }
+}
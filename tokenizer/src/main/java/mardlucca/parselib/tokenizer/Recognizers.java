@@ -38,6 +38,11 @@ public class Recognizers {
         return () -> new IdentifierRecognizer<>(aInToken);
     }
 
+    public static <T> Supplier<IdentifierRecognizer<T>> identifiers(
+            T aInToken, CharClass aInStart, CharClass aInPart) {
+        return () -> new IdentifierRecognizer<>(aInToken, aInStart, aInPart);
+    }
+
     public static <T>
     Supplier<MultiLineCommentRecognizer<T>> multiLineComments() {
         return multiLineComments(null, null);
@@ -46,8 +51,16 @@ public class Recognizers {
     public static <T> Supplier<MultiLineCommentRecognizer<T>> multiLineComments(
             String aInInitialCharSequence,
             String aInEndCharSequence) {
+        return multiLineComments(
+                aInInitialCharSequence, aInEndCharSequence, false);
+    }
+
+    public static <T> Supplier<MultiLineCommentRecognizer<T>> multiLineComments(
+            String aInInitialCharSequence,
+            String aInEndCharSequence,
+            boolean aInNested) {
         return () -> new MultiLineCommentRecognizer<>(
-                aInInitialCharSequence, aInEndCharSequence);
+                aInInitialCharSequence, aInEndCharSequence, aInNested);
     }
 
     public static <T> Supplier<NumberLiteralRecognizer<T>> numbers(
@@ -88,6 +101,28 @@ public class Recognizers {
                 aInToken);
     }
 
+    /**
+     * Like {@link #strings(Object)}, but values are unescaped as literals are
+     * read, into strings that are spooled to a temporary file past the given
+     * length.
+     */
+    public static <T> Supplier<StreamingStringLiteralRecognizer<T>>
+    streamingStrings(T aInToken, long aInSpoolThreshold) {
+        return () -> new StreamingStringLiteralRecognizer<>(
+                aInToken, aInSpoolThreshold);
+    }
+
+    /**
+     * Recognizes tokens matching the given regular expression. The
+     * expression is compiled once, and shared by all recognizers created by
+     * the returned supplier.
+     */
+    public static <T> Supplier<RegexRecognizer<T>> regex(
+            String aInPattern, T aInToken) {
+        RegexAutomaton lAutomaton = RegexAutomaton.compile(aInPattern);
+        return () -> new RegexRecognizer<>(lAutomaton, aInToken);
+    }
+
     public static <T> Supplier<SymbolRecognizer<T>> symbol(T aInToken) {
         return symbol(null, aInToken);
     }
@@ -109,6 +144,30 @@ public class Recognizers {
                 aInFromSupplier.get(), aInTransformation);
     }
 
+    /**
+     * Like {@link #transforming(Supplier, Function)}, but transformed values
+     * are cached by token text, so repeated text is only transformed once.
+     * The cache is shared by all recognizers created by the returned
+     * supplier.
+     */
+    public static <T, VF, VT>
+    Supplier<TokenRecognizer<T, VT>> memoizing(
+            Supplier<? extends TokenRecognizer<T, VF>> aInFromSupplier,
+            Function<? super VF, ? extends VT> aInTransformation,
+            int aInMaxSize) {
+        return memoizing(aInFromSupplier, aInTransformation,
+                new TransformCache<>(aInMaxSize));
+    }
+
+    public static <T, VF, VT>
+    Supplier<TokenRecognizer<T, VT>> memoizing(
+            Supplier<? extends TokenRecognizer<T, VF>> aInFromSupplier,
+            Function<? super VF, ? extends VT> aInTransformation,
+            TransformCache<VT> aInCache) {
+        return () -> new TransformingRecognizer<>(
+                aInFromSupplier.get(), aInTransformation, aInCache);
+    }
+
     public static <T, V>
     Supplier<TokenRecognizer<T, V>> conditional(
             Supplier<? extends TokenRecognizer<T, V>> aInFromSupplier,
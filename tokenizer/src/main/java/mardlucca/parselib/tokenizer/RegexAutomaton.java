@@ -0,0 +1,702 @@
+/*
+ * File: RegexAutomaton.java
+ *
+ * Copyright 2020 Marcio D. Lucca
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mardlucca.parselib.tokenizer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * A minimal deterministic automaton compiled from a regular expression. The
+ * supported syntax is a subset of {@link java.util.regex.Pattern}'s: literal
+ * characters and escapes (including \d, \w, \s and their negations), the dot
+ * (any character but a line terminator), character classes with ranges and
+ * negation, groups (capturing or not), alternation and the greedy quantifiers
+ * *, +, ? and {n,m}. Backreferences, anchors, lookarounds and flags are not
+ * supported, and neither are expressions whose automaton would have more than
+ * {@value #MAX_STATES} states.
+ * <p>
+ * Characters are mapped to classes of characters that are never told apart
+ * by the expression, so the transition table has a column per class. ASCII
+ * characters are mapped with a table lookup.
+ */
+final class RegexAutomaton {
+    static final int DEAD = -1;
+
+    // largest bound accepted in {n,m} quantifiers
+    private static final int MAX_REPETITIONS = 1000;
+
+    // largest automaton built before minimization, as some expressions, e.g.
+    // (a|b)*a(a|b){20}, need exponentially many states
+    private static final int MAX_STATES = 10000;
+
+    // the first character of each class, sorted
+    private final int[] classStarts;
+
+    private final int[] asciiClasses = new int[128];
+
+    // next state for each state and class
+    private final int[] transitions;
+
+    private final boolean[] accepting;
+
+    private RegexAutomaton(int[] aInClassStarts, int[] aInTransitions,
+                           boolean[] aInAccepting) {
+        classStarts = aInClassStarts;
+        transitions = aInTransitions;
+        accepting = aInAccepting;
+        for (int c = 0; c < asciiClasses.length; c++) {
+            asciiClasses[c] = classOf(c);
+        }
+    }
+
+    static RegexAutomaton compile(String aInPattern) {
+        Node lRoot = new Parser(aInPattern).parse();
+        Nfa lNfa = new Nfa();
+        int lStart = lNfa.newState();
+        lNfa.accepting = lRoot.build(lNfa, lStart);
+        RegexAutomaton lAutomaton = lNfa.toDfa(lStart);
+        if (lAutomaton == null) {
+            throw new IllegalArgumentException("More than " + MAX_STATES
+                    + " states needed by regular expression: " + aInPattern);
+        }
+        return lAutomaton;
+    }
+
+    int start() {
+        return 0;
+    }
+
+    int next(int aInState, int aInChar) {
+        if (aInChar < 0) {
+            return DEAD;
+        }
+        int lClass = aInChar < 128 ? asciiClasses[aInChar] : classOf(aInChar);
+        return transitions[aInState * classStarts.length + lClass];
+    }
+
+    boolean isAccepting(int aInState) {
+        return accepting[aInState];
+    }
+
+    int states() {
+        return accepting.length;
+    }
+
+    /**
+     * Length of the run of characters, from the given offset, that keep the
+     * automaton in the given state.
+     */
+    int run(int aInState, char[] aInChars, int aInStart, int aInEnd) {
+        int i = aInStart;
+        while (i < aInEnd && next(aInState, aInChars[i]) == aInState) {
+            i++;
+        }
+        return i - aInStart;
+    }
+
+    private int classOf(int aInChar) {
+        int lIndex = Arrays.binarySearch(classStarts, aInChar);
+        return lIndex >= 0 ? lIndex : -lIndex - 2;
+    }
+
+    /**
+     * A nondeterministic automaton, with epsilon transitions, built from the
+     * syntax tree.
+     */
+    private static class Nfa {
+        private List<List<Integer>> epsilons = new ArrayList<>();
+
+        // character transitions of each state, as ranges and targets
+        private List<List<int[]>> ranges = new ArrayList<>();
+
+        private List<List<Integer>> targets = new ArrayList<>();
+
+        private int accepting;
+
+        int newState() {
+            epsilons.add(new ArrayList<>());
+            ranges.add(new ArrayList<>());
+            targets.add(new ArrayList<>());
+            return epsilons.size() - 1;
+        }
+
+        void epsilon(int aInFrom, int aInTo) {
+            epsilons.get(aInFrom).add(aInTo);
+        }
+
+        void transition(int aInFrom, int[] aInRanges, int aInTo) {
+            ranges.get(aInFrom).add(aInRanges);
+            targets.get(aInFrom).add(aInTo);
+        }
+
+        private BitSet closure(BitSet aInStates) {
+            BitSet lClosure = (BitSet) aInStates.clone();
+            int[] lStack = new int[epsilons.size()];
+            int lTop = 0;
+            for (int s = aInStates.nextSetBit(0); s >= 0;
+                    s = aInStates.nextSetBit(s + 1)) {
+                lStack[lTop++] = s;
+            }
+            while (lTop > 0) {
+                for (int lNext : epsilons.get(lStack[--lTop])) {
+                    if (!lClosure.get(lNext)) {
+                        lClosure.set(lNext);
+                        lStack[lTop++] = lNext;
+                    }
+                }
+            }
+            return lClosure;
+        }
+
+        /**
+         * Subset construction followed by minimization. Returns null if more
+         * than {@link #MAX_STATES} states are needed.
+         */
+        RegexAutomaton toDfa(int aInStart) {
+            // classes of characters: between any two consecutive boundaries
+            // of ranges, all characters behave the same
+            TreeSet<Integer> lBoundaries = new TreeSet<>();
+            lBoundaries.add(0);
+            for (List<int[]> lStateRanges : ranges) {
+                for (int[] lRanges : lStateRanges) {
+                    for (int i = 0; i < lRanges.length; i += 2) {
+                        lBoundaries.add(lRanges[i]);
+                        if (lRanges[i + 1] < Character.MAX_VALUE) {
+                            lBoundaries.add(lRanges[i + 1] + 1);
+                        }
+                    }
+                }
+            }
+            int[] lClassStarts = lBoundaries.stream()
+                    .mapToInt(Integer::intValue).toArray();
+            int lClasses = lClassStarts.length;
+
+            List<BitSet> lStates = new ArrayList<>();
+            Map<BitSet, Integer> lStateNumbers = new HashMap<>();
+            List<int[]> lTransitions = new ArrayList<>();
+            BitSet lInitial = new BitSet();
+            lInitial.set(aInStart);
+            lInitial = closure(lInitial);
+            lStates.add(lInitial);
+            lStateNumbers.put(lInitial, 0);
+            for (int d = 0; d < lStates.size(); d++) {
+                BitSet lState = lStates.get(d);
+                int[] lNext = new int[lClasses];
+                for (int c = 0; c < lClasses; c++) {
+                    BitSet lMove = new BitSet();
+                    for (int s = lState.nextSetBit(0); s >= 0;
+                            s = lState.nextSetBit(s + 1)) {
+                        List<int[]> lStateRanges = ranges.get(s);
+                        for (int t = 0; t < lStateRanges.size(); t++) {
+                            if (contains(lStateRanges.get(t),
+                                    lClassStarts[c])) {
+                                lMove.set(targets.get(s).get(t));
+                            }
+                        }
+                    }
+                    if (lMove.isEmpty()) {
+                        lNext[c] = DEAD;
+                        continue;
+                    }
+                    lMove = closure(lMove);
+                    Integer lNumber = lStateNumbers.get(lMove);
+                    if (lNumber == null) {
+                        if (lStates.size() == MAX_STATES) {
+                            return null;
+                        }
+                        lNumber = lStates.size();
+                        lStates.add(lMove);
+                        lStateNumbers.put(lMove, lNumber);
+                    }
+                    lNext[c] = lNumber;
+                }
+                lTransitions.add(lNext);
+            }
+
+            boolean[] lAccepting = new boolean[lStates.size()];
+            for (int d = 0; d < lStates.size(); d++) {
+                lAccepting[d] = lStates.get(d).get(accepting);
+            }
+            return minimize(lClassStarts, lTransitions, lAccepting);
+        }
+
+        private static boolean contains(int[] aInRanges, int aInChar) {
+            for (int i = 0; i < aInRanges.length; i += 2) {
+                if (aInChar >= aInRanges[i] && aInChar <= aInRanges[i + 1]) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Merges equivalent states by partition refinement (Moore's
+         * algorithm), keeping the start state as state 0.
+         */
+        private static RegexAutomaton minimize(
+                int[] aInClassStarts,
+                List<int[]> aInTransitions,
+                boolean[] aInAccepting) {
+            int lStates = aInAccepting.length;
+            int lClasses = aInClassStarts.length;
+            int[] lBlocks = new int[lStates];
+            for (int s = 0; s < lStates; s++) {
+                lBlocks[s] = aInAccepting[s] ? 1 : 0;
+            }
+            int lBlockCount;
+            while (true) {
+                Map<List<Integer>, Integer> lSignatures = new HashMap<>();
+                int[] lNewBlocks = new int[lStates];
+                for (int s = 0; s < lStates; s++) {
+                    List<Integer> lSignature = new ArrayList<>(lClasses + 1);
+                    lSignature.add(lBlocks[s]);
+                    for (int lNext : aInTransitions.get(s)) {
+                        lSignature.add(lNext == DEAD ? DEAD : lBlocks[lNext]);
+                    }
+                    Integer lBlock = lSignatures.get(lSignature);
+                    if (lBlock == null) {
+                        lBlock = lSignatures.size();
+                        lSignatures.put(lSignature, lBlock);
+                    }
+                    lNewBlocks[s] = lBlock;
+                }
+                boolean lStable = lSignatures.size() == distinct(lBlocks);
+                lBlocks = lNewBlocks;
+                lBlockCount = lSignatures.size();
+                if (lStable) {
+                    break;
+                }
+            }
+
+            // state 0 is in block 0, as blocks are numbered in order of
+            // their first state
+            int[] lTransitions = new int[lBlockCount * lClasses];
+            boolean[] lAccepting = new boolean[lBlockCount];
+            for (int s = 0; s < lStates; s++) {
+                int lBlock = lBlocks[s];
+                lAccepting[lBlock] = aInAccepting[s];
+                int[] lNext = aInTransitions.get(s);
+                for (int c = 0; c < lClasses; c++) {
+                    lTransitions[lBlock * lClasses + c] =
+                            lNext[c] == DEAD ? DEAD : lBlocks[lNext[c]];
+                }
+            }
+            return new RegexAutomaton(
+                    aInClassStarts, lTransitions, lAccepting);
+        }
+
+        private static int distinct(int[] aInValues) {
+            return (int) Arrays.stream(aInValues).distinct().count();
+        }
+    }
+
+    private interface Node {
+        /**
+         * Adds this node to the automaton, from the given state, returning
+         * the state reached after it.
+         */
+        int build(Nfa aInNfa, int aInFrom);
+    }
+
+    private static class Chars implements Node {
+        private final int[] ranges;
+
+        Chars(int[] aInRanges) {
+            ranges = aInRanges;
+        }
+
+        @Override
+        public int build(Nfa aInNfa, int aInFrom) {
+            int lTo = aInNfa.newState();
+            aInNfa.transition(aInFrom, ranges, lTo);
+            return lTo;
+        }
+    }
+
+    private static class Sequence implements Node {
+        private final List<Node> nodes;
+
+        Sequence(List<Node> aInNodes) {
+            nodes = aInNodes;
+        }
+
+        @Override
+        public int build(Nfa aInNfa, int aInFrom) {
+            int lState = aInFrom;
+            for (Node lNode : nodes) {
+                lState = lNode.build(aInNfa, lState);
+            }
+            return lState;
+        }
+    }
+
+    private static class Alternation implements Node {
+        private final List<Node> alternatives;
+
+        Alternation(List<Node> aInAlternatives) {
+            alternatives = aInAlternatives;
+        }
+
+        @Override
+        public int build(Nfa aInNfa, int aInFrom) {
+            int lTo = aInNfa.newState();
+            for (Node lNode : alternatives) {
+                int lStart = aInNfa.newState();
+                aInNfa.epsilon(aInFrom, lStart);
+                aInNfa.epsilon(lNode.build(aInNfa, lStart), lTo);
+            }
+            return lTo;
+        }
+    }
+
+    private static class Repetition implements Node {
+        private final Node node;
+
+        private final int min;
+
+        // -1 if unbounded
+        private final int max;
+
+        Repetition(Node aInNode, int aInMin, int aInMax) {
+            node = aInNode;
+            min = aInMin;
+            max = aInMax;
+        }
+
+        @Override
+        public int build(Nfa aInNfa, int aInFrom) {
+            int lState = aInFrom;
+            for (int i = 0; i < min; i++) {
+                lState = node.build(aInNfa, lState);
+            }
+            if (max < 0) {
+                int lLoop = aInNfa.newState();
+                aInNfa.epsilon(lState, lLoop);
+                aInNfa.epsilon(node.build(aInNfa, lLoop), lLoop);
+                return lLoop;
+            }
+            int lTo = aInNfa.newState();
+            for (int i = min; i < max; i++) {
+                aInNfa.epsilon(lState, lTo);
+                lState = node.build(aInNfa, lState);
+            }
+            aInNfa.epsilon(lState, lTo);
+            return lTo;
+        }
+    }
+
+    /**
+     * Recursive descent parser of the supported syntax.
+     */
+    private static class Parser {
+        private final String pattern;
+
+        private int index;
+
+        Parser(String aInPattern) {
+            pattern = aInPattern;
+        }
+
+        Node parse() {
+            Node lNode = alternation();
+            if (index < pattern.length()) {
+                // only a closing parenthesis stops an alternation early
+                throw error("Unmatched closing parenthesis");
+            }
+            return lNode;
+        }
+
+        private Node alternation() {
+            List<Node> lAlternatives = new ArrayList<>();
+            lAlternatives.add(sequence());
+            while (index < pattern.length() && pattern.charAt(index) == '|') {
+                index++;
+                lAlternatives.add(sequence());
+            }
+            return lAlternatives.size() == 1
+                    ? lAlternatives.get(0)
+                    : new Alternation(lAlternatives);
+        }
+
+        private Node sequence() {
+            List<Node> lNodes = new ArrayList<>();
+            while (index < pattern.length()
+                    && pattern.charAt(index) != '|'
+                    && pattern.charAt(index) != ')') {
+                lNodes.add(quantified(atom()));
+            }
+            return lNodes.size() == 1 ? lNodes.get(0) : new Sequence(lNodes);
+        }
+
+        private Node quantified(Node aInNode) {
+            Node lNode = aInNode;
+            while (index < pattern.length()) {
+                char lChar = pattern.charAt(index);
+                if (lChar == '*') {
+                    lNode = new Repetition(lNode, 0, -1);
+                    index++;
+                } else if (lChar == '+') {
+                    lNode = new Repetition(lNode, 1, -1);
+                    index++;
+                } else if (lChar == '?') {
+                    lNode = new Repetition(lNode, 0, 1);
+                    index++;
+                } else if (lChar == '{') {
+                    lNode = bounded(lNode);
+                } else {
+                    return lNode;
+                }
+                if (index < pattern.length()
+                        && (pattern.charAt(index) == '?'
+                            || pattern.charAt(index) == '+')) {
+                    throw error("Lazy and possessive quantifiers are not "
+                            + "supported");
+                }
+            }
+            return lNode;
+        }
+
+        private Node bounded(Node aInNode) {
+            int lClose = pattern.indexOf('}', index);
+            if (lClose < 0) {
+                throw error("Unclosed repetition");
+            }
+            String[] lBounds = pattern.substring(index + 1, lClose)
+                    .split(",", -1);
+            int lMin;
+            int lMax;
+            try {
+                lMin = Integer.parseInt(lBounds[0].trim());
+                lMax = lBounds.length == 1
+                        ? lMin
+                        : lBounds[1].trim().isEmpty()
+                                ? -1
+                                : Integer.parseInt(lBounds[1].trim());
+            }
+            catch (NumberFormatException e) {
+                throw error("Invalid repetition");
+            }
+            if (lBounds.length > 2 || lMin < 0
+                    || lMax >= 0 && lMax < lMin
+                    || Math.max(lMin, lMax) > MAX_REPETITIONS) {
+                throw error("Invalid repetition");
+            }
+            index = lClose + 1;
+            return new Repetition(aInNode, lMin, lMax);
+        }
+
+        private Node atom() {
+            char lChar = pattern.charAt(index++);
+            switch (lChar) {
+                case '(':
+                    if (pattern.startsWith("?:", index)) {
+                        index += 2;
+                    } else if (pattern.startsWith("?", index)) {
+                        throw error("Unsupported group");
+                    }
+                    Node lNode = alternation();
+                    if (index >= pattern.length()) {
+                        throw error("Unclosed group");
+                    }
+                    index++;
+                    return lNode;
+                case '[':
+                    return new Chars(charClass());
+                case '.':
+                    return new Chars(complement(LINE_TERMINATORS));
+                case '\\':
+                    return new Chars(escape());
+                case '*':
+                case '+':
+                case '?':
+                case '{':
+                    throw error("Dangling quantifier");
+                case '^':
+                case '$':
+                    throw error("Anchors are not supported");
+                default:
+                    return new Chars(new int[] {lChar, lChar});
+            }
+        }
+
+        private int[] charClass() {
+            boolean lNegated = index < pattern.length()
+                    && pattern.charAt(index) == '^';
+            if (lNegated) {
+                index++;
+            }
+            List<int[]> lRanges = new ArrayList<>();
+            boolean lFirst = true;
+            while (true) {
+                if (index >= pattern.length()) {
+                    throw error("Unclosed character class");
+                }
+                char lChar = pattern.charAt(index++);
+                if (lChar == ']' && !lFirst) {
+                    break;
+                }
+                lFirst = false;
+                int[] lRange;
+                if (lChar == '\\') {
+                    lRange = escape();
+                } else if (lChar == '[') {
+                    throw error("Nested character classes are not "
+                            + "supported");
+                } else {
+                    lRange = new int[] {lChar, lChar};
+                }
+                if (lRange.length == 2 && lRange[0] == lRange[1]
+                        && index + 1 < pattern.length()
+                        && pattern.charAt(index) == '-'
+                        && pattern.charAt(index + 1) != ']') {
+                    // a range
+                    index++;
+                    char lLast = pattern.charAt(index++);
+                    int lEnd = lLast == '\\' ? single(escape()) : lLast;
+                    if (lEnd < lRange[0]) {
+                        throw error("Invalid range");
+                    }
+                    lRange = new int[] {lRange[0], lEnd};
+                }
+                lRanges.add(lRange);
+            }
+            int[] lUnion = union(lRanges);
+            return lNegated ? complement(lUnion) : lUnion;
+        }
+
+        private int single(int[] aInRanges) {
+            if (aInRanges.length != 2 || aInRanges[0] != aInRanges[1]) {
+                throw error("Invalid range");
+            }
+            return aInRanges[0];
+        }
+
+        private int[] escape() {
+            if (index >= pattern.length()) {
+                throw error("Dangling escape");
+            }
+            char lChar = pattern.charAt(index++);
+            switch (lChar) {
+                case 'd':
+                    return new int[] {'0', '9'};
+                case 'D':
+                    return complement(new int[] {'0', '9'});
+                case 'w':
+                    return WORD;
+                case 'W':
+                    return complement(WORD);
+                case 's':
+                    return SPACE;
+                case 'S':
+                    return complement(SPACE);
+                case 't':
+                    return new int[] {'\t', '\t'};
+                case 'n':
+                    return new int[] {'\n', '\n'};
+                case 'r':
+                    return new int[] {'\r', '\r'};
+                case 'f':
+                    return new int[] {'\f', '\f'};
+                case 'u':
+                    if (index + 4 > pattern.length()) {
+                        throw error("Invalid unicode escape");
+                    }
+                    try {
+                        int lCode = Integer.parseInt(
+                                pattern.substring(index, index + 4), 16);
+                        index += 4;
+                        return new int[] {lCode, lCode};
+                    }
+                    catch (NumberFormatException e) {
+                        throw error("Invalid unicode escape");
+                    }
+                default:
+                    if (Character.isLetterOrDigit(lChar)) {
+                        // e.g. backreferences, boundaries and properties
+                        throw error("Unsupported escape \\" + lChar);
+                    }
+                    return new int[] {lChar, lChar};
+            }
+        }
+
+        private IllegalArgumentException error(String aInMessage) {
+            return new IllegalArgumentException(aInMessage + " near index "
+                    + index + " of regular expression: " + pattern);
+        }
+    }
+
+    private static final int[] WORD =
+            {'0', '9', 'A', 'Z', '_', '_', 'a', 'z'};
+
+    // what the dot does not match, as in Pattern without DOTALL
+    private static final int[] LINE_TERMINATORS =
+            {'\n', '\n', '\r', '\r', '\u0085', '\u0085', '\u2028', '\u2029'};
+
+    private static final int[] SPACE = {'\t', '\n', '\u000B', '\r', ' ', ' '};
+
+    /**
+     * Sorted, non-overlapping ranges covering all the given ones.
+     */
+    private static int[] union(List<int[]> aInRanges) {
+        List<int[]> lPairs = new ArrayList<>();
+        for (int[] lRanges : aInRanges) {
+            for (int i = 0; i < lRanges.length; i += 2) {
+                lPairs.add(new int[] {lRanges[i], lRanges[i + 1]});
+            }
+        }
+        lPairs.sort((a, b) -> Integer.compare(a[0], b[0]));
+        List<Integer> lUnion = new ArrayList<>();
+        for (int[] lPair : lPairs) {
+            int lSize = lUnion.size();
+            if (lSize > 0 && lPair[0] <= lUnion.get(lSize - 1) + 1) {
+                lUnion.set(lSize - 1,
+                        Math.max(lUnion.get(lSize - 1), lPair[1]));
+            } else {
+                lUnion.add(lPair[0]);
+                lUnion.add(lPair[1]);
+            }
+        }
+        return lUnion.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * The characters not in the given sorted, non-overlapping ranges.
+     */
+    private static int[] complement(int[] aInRanges) {
+        List<Integer> lComplement = new ArrayList<>();
+        int lNext = 0;
+        for (int i = 0; i < aInRanges.length; i += 2) {
+            if (aInRanges[i] > lNext) {
+                lComplement.add(lNext);
+                lComplement.add(aInRanges[i] - 1);
+            }
+            lNext = aInRanges[i + 1] + 1;
+        }
+        if (lNext <= Character.MAX_VALUE) {
+            lComplement.add(lNext);
+            lComplement.add((int) Character.MAX_VALUE);
+        }
+        return lComplement.stream().mapToInt(Integer::intValue).toArray();
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * File: RegexRecognizer.java
+ *
+ * Copyright 2020 Marcio D. Lucca
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mardlucca.parselib.tokenizer;
+
+/**
+ * Recognizes tokens matching a regular expression, which is compiled into a
+ * minimal deterministic automaton (see {@link RegexAutomaton} for the
+ * supported syntax), so each character is tested with a table lookup. The
+ * value of tokens is their text.
+ */
+public class RegexRecognizer<T> extends BaseTokenRecognizer<T, String> {
+    private RegexAutomaton automaton;
+
+    private int state;
+
+    public RegexRecognizer(String aInPattern, T aInToken) {
+        this(RegexAutomaton.compile(aInPattern), aInToken);
+    }
+
+    RegexRecognizer(RegexAutomaton aInAutomaton, T aInToken) {
+        super(aInToken);
+        automaton = aInAutomaton;
+        state = automaton.start();
+    }
+
+    @Override
+    public MatchResult test(int aInChar, Object aInSyntacticContext) {
+        if (state == RegexAutomaton.DEAD) {
+            return MatchResult.NOT_A_MATCH;
+        }
+        state = automaton.next(state, aInChar);
+        if (state == RegexAutomaton.DEAD) {
+            return MatchResult.NOT_A_MATCH;
+        }
+        return automaton.isAccepting(state)
+                ? MatchResult.MATCH
+                : MatchResult.PARTIAL_MATCH;
+    }
+
+    @Override
+    public int scan(char[] aInChars, int aInStart, int aInEnd) {
+        // characters that loop back to the current state
+        return state == RegexAutomaton.DEAD
+                ? 0
+                : automaton.run(state, aInChars, aInStart, aInEnd);
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        state = automaton.start();
+    }
+
+    @Override
+    protected String getValue(String aInCharSequence) {
+        return aInCharSequence;
+    }
+}
@@ -75,6 +75,14 @@ public class SingleLineCommentRecognizer<T>
         return MatchResult.MATCH;
     }
 
+    @Override
+    public int scan(char[] aInChars, int aInStart, int aInEnd) {
+        return state == State.READING_COMMENT_LINE
+                ? CharRuns.runUntil(aInChars, aInStart, aInEnd,
+                        '\n', '\n', '\n')
+                : 0;
+    }
+
     @Override
     public void reset() {
         super.reset();
@@ -92,6 +100,11 @@ public class SingleLineCommentRecognizer<T>
         return true;
     }
 
+    @Override
+    public boolean isCommitted() {
+        return state == State.READING_COMMENT_LINE;
+    }
+
     private enum State {
         READING_SEQUENCE,
         READING_COMMENT_LINE,
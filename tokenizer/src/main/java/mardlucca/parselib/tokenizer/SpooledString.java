@@ -0,0 +1,241 @@
+/*
+ * File: SpooledString.java
+ *
+ * Copyright 2020 Marcio D. Lucca
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mardlucca.parselib.tokenizer;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.lang.ref.PhantomReference;
+import java.lang.ref.ReferenceQueue;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A string built incrementally, possibly too large to be held in memory as a
+ * {@link String}. Characters are kept in fixed size chunks, so the string is
+ * never copied as it grows, and moved to a temporary file once there are more
+ * than a given number of them. Whoever ends up with a spooled string, e.g. as
+ * the value of a token, owns it and should close it once no longer needed,
+ * which deletes the file. Spooled strings that are garbage collected without
+ * being closed (e.g. the value of a token that was never consumed) have their
+ * files deleted by a daemon thread, the way {@code java.lang.ref.Cleaner}
+ * would.
+ */
+public class SpooledString implements AutoCloseable {
+    private static final int CHUNK_SIZE = 4096;
+
+    private long spoolThreshold;
+
+    private List<char[]> chunks = new ArrayList<>();
+
+    private int lastChunkLength = CHUNK_SIZE;
+
+    private long length;
+
+    private Path file;
+
+    private SpoolFile spoolFile;
+
+    private Writer writer;
+
+    public SpooledString(long aInSpoolThreshold) {
+        spoolThreshold = aInSpoolThreshold;
+    }
+
+    void append(char aInChar) throws IOException {
+        if (writer != null) {
+            writer.write(aInChar);
+        } else {
+            if (lastChunkLength == CHUNK_SIZE) {
+                chunks.add(new char[CHUNK_SIZE]);
+                lastChunkLength = 0;
+            }
+            chunks.get(chunks.size() - 1)[lastChunkLength++] = aInChar;
+            if (length + 1 > spoolThreshold) {
+                spool();
+            }
+        }
+        length++;
+    }
+
+    void append(CharSequence aInChars) throws IOException {
+        for (int i = 0; i < aInChars.length(); i++) {
+            append(aInChars.charAt(i));
+        }
+    }
+
+    private void spool() throws IOException {
+        file = Files.createTempFile("parselib", ".str");
+        spoolFile = new SpoolFile(this, file);
+        writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+        for (int i = 0; i < chunks.size(); i++) {
+            writer.write(chunks.get(i), 0,
+                    i == chunks.size() - 1 ? lastChunkLength : CHUNK_SIZE);
+        }
+        chunks = null;
+    }
+
+    /**
+     * Called once all characters were appended.
+     */
+    void finish() throws IOException {
+        if (writer != null) {
+            writer.close();
+            writer = null;
+        }
+    }
+
+    public long length() {
+        return length;
+    }
+
+    /**
+     * Whether the characters were moved to a temporary file.
+     */
+    public boolean isSpooled() {
+        return file != null;
+    }
+
+    Path getFile() {
+        return file;
+    }
+
+    public Reader openReader() throws IOException {
+        if (file != null) {
+            if (writer != null) {
+                writer.flush();
+            }
+            return Files.newBufferedReader(file, StandardCharsets.UTF_8);
+        }
+        return new Reader() {
+            private int chunk;
+
+            private int index;
+
+            @Override
+            public int read(char[] aInBuffer, int aInOffset, int aInLength) {
+                if (chunk == chunks.size() - 1 && index == lastChunkLength
+                        || chunk == chunks.size()) {
+                    return -1;
+                }
+                if (index == CHUNK_SIZE) {
+                    chunk++;
+                    index = 0;
+                }
+                int lLength = Math.min(aInLength, (chunk == chunks.size() - 1
+                        ? lastChunkLength
+                        : CHUNK_SIZE) - index);
+                System.arraycopy(chunks.get(chunk), index, aInBuffer,
+                        aInOffset, lLength);
+                index += lLength;
+                return lLength;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    /**
+     * Builds the whole string in memory.
+     */
+    @Override
+    public String toString() {
+        if (length > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException(
+                    "String too long: " + length + " characters");
+        }
+        StringBuilder lBuilder = new StringBuilder((int) length);
+        try (Reader lReader = openReader()) {
+            char[] lBuffer = new char[CHUNK_SIZE];
+            int lRead;
+            while ((lRead = lReader.read(lBuffer)) != -1) {
+                lBuilder.append(lBuffer, 0, lRead);
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return lBuilder.toString();
+    }
+
+    @Override
+    public void close() throws IOException {
+        finish();
+        if (spoolFile != null) {
+            spoolFile.delete();
+            spoolFile = null;
+        }
+    }
+
+    /**
+     * Deletes the file of a spooled string, once the string is either closed
+     * or garbage collected.
+     */
+    private static class SpoolFile extends PhantomReference<SpooledString> {
+        private static final ReferenceQueue<SpooledString> collected =
+                new ReferenceQueue<>();
+
+        // keeps the references themselves from being garbage collected
+        private static final Set<SpoolFile> pending =
+                ConcurrentHashMap.newKeySet();
+
+        static {
+            Thread lThread = new Thread(
+                    SpoolFile::deleteCollected, "parselib-spool-cleaner");
+            lThread.setDaemon(true);
+            lThread.start();
+        }
+
+        private Path file;
+
+        SpoolFile(SpooledString aInString, Path aInFile) {
+            super(aInString, collected);
+            file = aInFile;
+            pending.add(this);
+        }
+
+        void delete() throws IOException {
+            pending.remove(this);
+            clear();
+            Files.deleteIfExists(file);
+        }
+
+        private static void deleteCollected() {
+            while (true) {
+                try {
+                    ((SpoolFile) collected.remove()).delete();
+                }
+                catch (InterruptedException e) {
+                    return;
+                }
+                catch (IOException e) {
+                    // e.g. still open elsewhere. Nothing else we can do.
+                }
+            }
+        }
+    }
+}
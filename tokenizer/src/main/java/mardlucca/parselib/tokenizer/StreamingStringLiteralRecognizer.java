@@ -0,0 +1,300 @@
+/*
+ * File: StreamingStringLiteralRecognizer.java
+ *
+ * Copyright 2020 Marcio D. Lucca
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mardlucca.parselib.tokenizer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Recognizes the same string literals as {@link StringLiteralRecognizer}, but
+ * unescapes them as they are read into a {@link SpooledString}, which goes to
+ * a temporary file past a given length. As the text of the token is not
+ * needed to compute its value, the tokenizer does not retain it (see
+ * {@link TokenRecognizer#isTextRequired()}), so huge literals never sit in
+ * memory. Whoever gets the value of a token owns the spooled string and
+ * should close it (see {@link SpooledString}).
+ * <p>
+ * Values are unescaped with the same (Java) rules, unicode and octal escapes
+ * included, whatever the escape character. The only difference is that a
+ * malformed unicode escape makes the literal unrecognized here, rather than
+ * make computing its value fail.
+ */
+public class StreamingStringLiteralRecognizer<T>
+        extends BaseTokenRecognizer<T, SpooledString> {
+    private static final String INVALID_UNICODE_ESCAPE =
+            "Not a valid unicode escape sequence";
+
+    private StringLiteralRecognizer<T> delegate;
+
+    private long spoolThreshold;
+
+    private SpooledString value;
+
+    private boolean started;
+
+    private boolean matched;
+
+    // where we are in the escape sequence being unescaped
+    private Escape escape = Escape.NONE;
+
+    // code point of an octal or unicode escape sequence, and how many digits
+    // of it were read
+    private int code;
+
+    private int digits;
+
+    public StreamingStringLiteralRecognizer(
+            T aInToken, long aInSpoolThreshold) {
+        this('\\', '\"', null, aInToken, aInSpoolThreshold);
+    }
+
+    public StreamingStringLiteralRecognizer(
+            char aInEscapeCharacter,
+            char aInDelimiterCharacter,
+            char[] aInEscapeSequences,
+            T aInToken,
+            long aInSpoolThreshold) {
+        super(aInToken);
+        delegate = new StringLiteralRecognizer<>(aInEscapeCharacter,
+                aInDelimiterCharacter, aInEscapeSequences, aInToken);
+        spoolThreshold = aInSpoolThreshold;
+    }
+
+    @Override
+    public MatchResult test(int aInChar, Object aInSyntacticContext) {
+        MatchResult lResult = delegate.test(aInChar, aInSyntacticContext);
+        try {
+            if (lResult == MatchResult.MATCH) {
+                if (!endEscape()) {
+                    return invalidUnicodeEscape();
+                }
+                value().finish();
+                matched = true;
+            } else if (lResult != MatchResult.PARTIAL_MATCH) {
+                if (!matched) {
+                    discardValue();
+                }
+            } else if (!started) {
+                // opening delimiter
+                started = true;
+            } else if (!unescape((char) aInChar)) {
+                return invalidUnicodeEscape();
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return lResult;
+    }
+
+    /**
+     * Unescapes the next character of the literal the way
+     * {@link org.apache.commons.text.StringEscapeUtils#unescapeJava(String)}
+     * would. Returns false if the character can't be part of the unicode
+     * escape sequence being read.
+     */
+    private boolean unescape(char aInChar) throws IOException {
+        switch (escape) {
+            case NONE:
+                if (aInChar == '\\') {
+                    escape = Escape.BACKSLASH;
+                } else {
+                    value().append(aInChar);
+                }
+                return true;
+            case BACKSLASH:
+                if (aInChar >= '0' && aInChar <= '7') {
+                    escape = Escape.OCTAL;
+                    code = aInChar - '0';
+                    digits = 1;
+                } else if (aInChar == 'u') {
+                    escape = Escape.UNICODE;
+                    code = 0;
+                    digits = 0;
+                } else {
+                    escape = Escape.NONE;
+                    value().append(unescapeControl(aInChar));
+                }
+                return true;
+            case OCTAL:
+                // up to \377
+                if (aInChar >= '0' && aInChar <= '7'
+                        && (digits == 1 || digits == 2 && code <= 037)) {
+                    code = code * 8 + aInChar - '0';
+                    digits++;
+                    return true;
+                }
+                value().append((char) code);
+                escape = Escape.NONE;
+                return unescape(aInChar);
+            case UNICODE:
+                if (digits == 0 && aInChar == 'u') {
+                    // any number of u's is fine
+                    return true;
+                }
+                escape = Escape.UNICODE_DIGITS;
+                if (aInChar == '+') {
+                    return true;
+                }
+                return unescape(aInChar);
+            case UNICODE_DIGITS:
+                int lDigit = Character.digit(aInChar, 16);
+                if (lDigit < 0) {
+                    return false;
+                }
+                code = code * 16 + lDigit;
+                if (++digits == 4) {
+                    value().append((char) code);
+                    escape = Escape.NONE;
+                }
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Ends the escape sequence being read, if any, once the closing delimiter
+     * is found. Returns false if it's an incomplete unicode escape sequence.
+     */
+    private boolean endEscape() throws IOException {
+        Escape lEscape = escape;
+        escape = Escape.NONE;
+        if (lEscape == Escape.OCTAL) {
+            value().append((char) code);
+        }
+        // a trailing backslash is dropped
+        return lEscape != Escape.UNICODE && lEscape != Escape.UNICODE_DIGITS;
+    }
+
+    private static char unescapeControl(char aInChar) {
+        switch (aInChar) {
+            case 'b':
+                return '\b';
+            case 'f':
+                return '\f';
+            case 'n':
+                return '\n';
+            case 'r':
+                return '\r';
+            case 't':
+                return '\t';
+            default:
+                return aInChar;
+        }
+    }
+
+    private MatchResult invalidUnicodeEscape() {
+        discardValue();
+        setFailureReason(INVALID_UNICODE_ESCAPE);
+        return MatchResult.NOT_A_MATCH;
+    }
+
+    private SpooledString value() {
+        if (value == null) {
+            value = new SpooledString(spoolThreshold);
+        }
+        return value;
+    }
+
+    private void discardValue() {
+        if (value != null) {
+            try {
+                value.close();
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            value = null;
+        }
+    }
+
+    @Override
+    public Token<T, SpooledString> getToken(String aInCharSequence) {
+        // the value belongs to the token from now on
+        SpooledString lValue = value();
+        value = null;
+        return new Token<>(getTokenId(), aInCharSequence, lValue);
+    }
+
+    @Override
+    protected SpooledString getValue(String aInCharSequence) {
+        SpooledString lValue = new SpooledString(spoolThreshold);
+        try {
+            lValue.append(delegate.getValue(aInCharSequence));
+            lValue.finish();
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return lValue;
+    }
+
+    @Override
+    public int scan(char[] aInChars, int aInStart, int aInEnd) {
+        int lEnd = started && escape == Escape.NONE
+                ? aInStart + delegate.scan(aInChars, aInStart, aInEnd)
+                : aInStart;
+        int i = aInStart;
+        try {
+            // escape sequences are left for test() to go through
+            for (; i < lEnd && aInChars[i] != '\\'; i++) {
+                value().append(aInChars[i]);
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return i - aInStart;
+    }
+
+    @Override
+    public boolean isCommitted() {
+        return started;
+    }
+
+    @Override
+    public boolean isTextRequired() {
+        return false;
+    }
+
+    @Override
+    public String getFailureReason() {
+        String lReason = super.getFailureReason();
+        return lReason == null ? delegate.getFailureReason() : lReason;
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        delegate.reset();
+        started = false;
+        matched = false;
+        escape = Escape.NONE;
+        // e.g. a literal that was matched but not turned into a token
+        discardValue();
+    }
+
+    private enum Escape {
+        NONE,
+        BACKSLASH,
+        OCTAL,
+        UNICODE,
+        UNICODE_DIGITS
+    }
+}
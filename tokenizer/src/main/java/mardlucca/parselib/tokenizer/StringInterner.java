@@ -0,0 +1,135 @@
+/*
+ * File: StringInterner.java
+ *
+ * Copyright 2020 Marcio D. Lucca
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mardlucca.parselib.tokenizer;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded table of strings used to share a single instance among tokens
+ * with the same text (e.g. identifiers and keywords). Strings are looked up
+ * by the characters read, so repeated text is found without allocating a new
+ * string for it.
+ * <p>
+ * The table is direct mapped: each string has a single slot, and a string is
+ * simply replaced by a newer one if both map to the same slot. This keeps
+ * memory bounded and lookups lock free, so the same instance can be shared by
+ * tokenizers running on different threads.
+ */
+public class StringInterner {
+    private static final int DEFAULT_CAPACITY = 4096;
+
+    private static final int DEFAULT_MAX_LENGTH = 64;
+
+    private AtomicReferenceArray<String> table;
+
+    private int mask;
+
+    private int maxLength;
+
+    public StringInterner() {
+        this(DEFAULT_CAPACITY, DEFAULT_MAX_LENGTH);
+    }
+
+    /**
+     * @param aInCapacity number of slots in the table, rounded up to a power
+     *                    of two.
+     * @param aInMaxLength longer strings are not interned, as they are
+     *                     unlikely to repeat.
+     */
+    public StringInterner(int aInCapacity, int aInMaxLength) {
+        int lCapacity = Integer.highestOneBit(Math.max(1, aInCapacity));
+        if (lCapacity < aInCapacity) {
+            lCapacity <<= 1;
+        }
+        table = new AtomicReferenceArray<>(lCapacity);
+        mask = lCapacity - 1;
+        maxLength = aInMaxLength;
+    }
+
+    public String intern(CharSequence aInCharSequence) {
+        int lLength = aInCharSequence.length();
+        if (lLength > maxLength) {
+            return aInCharSequence.toString();
+        }
+
+        int lHash = 0;
+        for (int i = 0; i < lLength; i++) {
+            lHash = 31 * lHash + aInCharSequence.charAt(i);
+        }
+        int lSlot = slot(lHash);
+        String lString = table.get(lSlot);
+        if (lString != null && lString.contentEquals(aInCharSequence)) {
+            return lString;
+        }
+
+        lString = aInCharSequence.toString();
+        table.set(lSlot, lString);
+        return lString;
+    }
+
+    /**
+     * Interns the string made of the first {@code aInLength} characters in
+     * {@code aInCharacters}.
+     */
+    String intern(int[] aInCharacters, int aInLength) {
+        if (aInLength > maxLength) {
+            return toString(aInCharacters, aInLength);
+        }
+
+        int lHash = 0;
+        for (int i = 0; i < aInLength; i++) {
+            lHash = 31 * lHash + (char) aInCharacters[i];
+        }
+        int lSlot = slot(lHash);
+        String lString = table.get(lSlot);
+        if (lString != null && matches(lString, aInCharacters, aInLength)) {
+            return lString;
+        }
+
+        lString = toString(aInCharacters, aInLength);
+        table.set(lSlot, lString);
+        return lString;
+    }
+
+    private int slot(int aInHash) {
+        // spread the higher bits, as the table is usually small
+        return (aInHash ^ (aInHash >>> 16)) & mask;
+    }
+
+    private static boolean matches(
+            String aInString, int[] aInCharacters, int aInLength) {
+        if (aInString.length() != aInLength) {
+            return false;
+        }
+        for (int i = 0; i < aInLength; i++) {
+            if (aInString.charAt(i) != (char) aInCharacters[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String toString(int[] aInCharacters, int aInLength) {
+        char[] lChars = new char[aInLength];
+        for (int i = 0; i < aInLength; i++) {
+            lChars[i] = (char) aInCharacters[i];
+        }
+        return new String(lChars);
+    }
+}
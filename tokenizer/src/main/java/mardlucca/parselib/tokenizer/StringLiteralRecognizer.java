@@ -113,12 +113,25 @@ public class StringLiteralRecognizer<T> extends BaseTokenRecognizer<T, String> {
         return failure("Not a valid escape sequence");
     }
 
+    @Override
+    public int scan(char[] aInChars, int aInStart, int aInEnd) {
+        return state == State.READING_STRING
+                ? CharRuns.runUntil(aInChars, aInStart, aInEnd,
+                        delimiterCharacter, escapeCharacter, '\n')
+                : 0;
+    }
+
     @Override
     public void reset() {
         super.reset();
         state = State.INITIAL;
     }
 
+    @Override
+    protected boolean isValueLazy() {
+        return true;
+    }
+
     @Override
     public String getValue(String aInCharSequence) {
         if (aInCharSequence.length() < 3) {
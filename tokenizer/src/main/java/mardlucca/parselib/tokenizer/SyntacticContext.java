@@ -0,0 +1,30 @@
+/*
+ * File: SyntacticContext.java
+ *
+ * Copyright 2020 Marcio D. Lucca
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mardlucca.parselib.tokenizer;
+
+/**
+ * A syntactic context that knows which tokens can legally appear next. When
+ * such a context is passed to {@link Tokenizer#nextToken(Object)}, tokenizers
+ * may skip recognizers for tokens that are not expected.
+ *
+ * @param <T> the token id type
+ */
+public interface SyntacticContext<T> {
+    boolean isExpected(T aInTokenId);
+}
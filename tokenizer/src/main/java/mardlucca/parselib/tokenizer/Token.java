@@ -25,12 +25,23 @@ public class Token<T, V> {
 
     private V value;
 
+    // ignored tokens (e.g. white spaces and comments) right before this one,
+    // as (kind, start, length) triples
+    private long[] trivia;
+
+    private int triviaCount;
+
     Token(T aInId, String aInCharSequence, V aInValue) {
         id = aInId;
         charSequence = aInCharSequence;
         value = aInValue;
     }
 
+    void setTrivia(long[] aInTrivia, int aInCount) {
+        trivia = aInTrivia;
+        triviaCount = aInCount;
+    }
+
     public T getId() {
         return id;
     }
@@ -43,15 +54,52 @@ public class Token<T, V> {
         return value;
     }
 
+    /**
+     * The number of ignored tokens right before this one, if the tokenizer
+     * records them (see {@link BasicTokenizer.Builder#trivia(boolean)}).
+     */
+    public int getTriviaCount() {
+        return triviaCount;
+    }
+
+    /**
+     * The position, among the recognizers of the lexer mode it was
+     * recognized in, of the recognizer that matched the given ignored token.
+     */
+    public int getTriviaKind(int aInIndex) {
+        return (int) trivia[checkTrivia(aInIndex) * 3];
+    }
+
+    /**
+     * Offset, in characters from the beginning of the input, of the given
+     * ignored token.
+     */
+    public long getTriviaStart(int aInIndex) {
+        return trivia[checkTrivia(aInIndex) * 3 + 1];
+    }
+
+    public long getTriviaLength(int aInIndex) {
+        return trivia[checkTrivia(aInIndex) * 3 + 2];
+    }
+
+    private int checkTrivia(int aInIndex) {
+        if (aInIndex < 0 || aInIndex >= triviaCount) {
+            throw new IndexOutOfBoundsException(String.valueOf(aInIndex));
+        }
+        return aInIndex;
+    }
+
     @Override
     public String toString() {
-        if (charSequence == null) {
-            return "Token{id=" + id + "}";
+        String lCharSequence = getCharSequence();
+        if (lCharSequence == null) {
+            return "Token{id=" + getId() + "}";
         }
+        V lValue = getValue();
         return "Token{" +
-            "id=" + id +
-            ", charSequence='" + charSequence + '\'' +
-            ", value='" + value + '\'' +
-            ", valueType='" + value.getClass().getName() + "\'}";
+            "id=" + getId() +
+            ", charSequence='" + lCharSequence + '\'' +
+            ", value='" + lValue + '\'' +
+            ", valueType='" + lValue.getClass().getName() + "\'}";
     }
 }
@@ -32,4 +32,63 @@ public interface TokenRecognizer<T, V> {
     String getFailureReason();
 
     boolean isIgnored();
+
+    /**
+     * The id of the tokens produced by this recognizer, if known ahead of
+     * time. Recognizers returning null are never pruned from the set of
+     * recognizers considered for a given syntactic context.
+     */
+    default T getTokenId() {
+        return null;
+    }
+
+    /**
+     * The recognizer to use in the given syntactic context: either this one,
+     * a recognizer that skips checks already known to pass in that context,
+     * or null if nothing can be matched in it.
+     */
+    default TokenRecognizer<T, V> forContext(Object aInSyntacticContext) {
+        return this;
+    }
+
+    /**
+     * Whether, given the characters tested since the last reset, this
+     * recognizer is sure to either match a token made of (at least) all of
+     * them or fail. Ignored tokens of committed recognizers don't have their
+     * text retained, so long comments don't take up memory.
+     */
+    default boolean isCommitted() {
+        return false;
+    }
+
+    /**
+     * Whether the value of tokens is computed from their text. The text of
+     * tokens of committed recognizers that don't need it is not retained
+     * either, and tokens only get its beginning.
+     */
+    default boolean isTextRequired() {
+        return true;
+    }
+
+    /**
+     * The number of characters, from the given offset, that this recognizer
+     * would accept one at a time, in its current state, with the same result
+     * it gave for the last character tested and without changing its state
+     * otherwise. The tokenizer calls this when only this recognizer is left,
+     * so runs of characters (e.g. white spaces, or the body of identifiers,
+     * strings and comments) are consumed in bulk rather than tested one by
+     * one. Recognizers that can't tell return 0.
+     */
+    default int scan(char[] aInChars, int aInStart, int aInEnd) {
+        return 0;
+    }
+
+    /**
+     * Whether what this recognizer matches may depend on the syntactic
+     * context. Tokens can only be recognized ahead of the parser (e.g. on
+     * another thread) if none of the recognizers is context sensitive.
+     */
+    default boolean isContextSensitive() {
+        return true;
+    }
 }
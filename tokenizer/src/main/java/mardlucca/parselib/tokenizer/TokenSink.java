@@ -0,0 +1,28 @@
+/*
+ * File: TokenSink.java
+ *
+ * Copyright 2020 Marcio D. Lucca
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mardlucca.parselib.tokenizer;
+
+/**
+ * Receives the tokens pushed by tokenizers, e.g. by
+ * {@link BasicTokenizer#tokenize(TokenSink)}.
+ */
+@FunctionalInterface
+public interface TokenSink<T> {
+    void accept(Token<T, ?> aInToken);
+}
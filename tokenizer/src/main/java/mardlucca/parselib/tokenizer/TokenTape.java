@@ -0,0 +1,199 @@
+/*
+ * File: TokenTape.java
+ *
+ * Copyright 2020 Marcio D. Lucca
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mardlucca.parselib.tokenizer;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * A tokenizer over tokens that were all recognized ahead of time, e.g. by
+ * {@link ParallelTokenizer}. Besides the tokens, the tape holds the errors
+ * found in the input, which are thrown in order as the tape is read, and the
+ * offsets of every token in the input. The last token is always the end of
+ * file.
+ */
+public class TokenTape<T> implements LookaheadTokenizer<T> {
+    private Object[] items;
+
+    private int[] starts;
+
+    private int[] ends;
+
+    private int size;
+
+    private int position;
+
+    private int mark = -1;
+
+    TokenTape(Object[] aInItems, int[] aInStarts, int[] aInEnds, int aInSize) {
+        items = aInItems;
+        starts = aInStarts;
+        ends = aInEnds;
+        size = aInSize;
+    }
+
+    @Override
+    public Token<T, ?> nextToken(Object aInSyntacticContext)
+            throws UnrecognizedCharacterSequenceException {
+        // advance before reading the entry, so that a stored error is only
+        // thrown once and the tape moves past it
+        int lIndex = position;
+        if (position < size - 1) {
+            // we stay at the end of file once we get there
+            position++;
+        }
+        return get(lIndex);
+    }
+
+    /**
+     * Consumes up to {@code aInLength} tokens into {@code aInTokens},
+     * starting at {@code aInOffset} and stopping after the end of file token.
+     * Returns the number of tokens stored. Tokens are recognized without a
+     * syntactic context.
+     */
+    public int nextTokens(
+            Token<T, ?>[] aInTokens, int aInOffset, int aInLength)
+            throws UnrecognizedCharacterSequenceException {
+        for (int i = 0; i < aInLength; i++) {
+            int lIndex = position;
+            if (lIndex == size - 1) {
+                aInTokens[aInOffset + i] = get(lIndex);
+                return i + 1;
+            }
+            position++;
+            aInTokens[aInOffset + i] = get(lIndex);
+        }
+        return aInLength;
+    }
+
+    /**
+     * The id of the token returned once the end of the input is reached.
+     */
+    @SuppressWarnings("unchecked")
+    public T getEndOfFile() {
+        return ((Token<T, ?>) items[size - 1]).getId();
+    }
+
+    /**
+     * Consumes all remaining tokens, up to and including the end of file,
+     * handing them to {@code aInSink}. Tokens are recognized without a
+     * syntactic context.
+     */
+    public void tokenize(TokenSink<T> aInSink)
+            throws UnrecognizedCharacterSequenceException {
+        Token<T, ?> lToken;
+        do {
+            lToken = nextToken(null);
+            aInSink.accept(lToken);
+        }
+        while (!Objects.equals(lToken.getId(), getEndOfFile()));
+    }
+
+    @Override
+    public Token<T, ?> peekToken(Object aInSyntacticContext)
+            throws UnrecognizedCharacterSequenceException {
+        return peekToken(1, aInSyntacticContext);
+    }
+
+    @Override
+    public Token<T, ?> peekToken(int aInDistance, Object aInSyntacticContext)
+            throws UnrecognizedCharacterSequenceException {
+        if (aInDistance < 1) {
+            throw new IllegalArgumentException(
+                    "Distance must be at least 1: " + aInDistance);
+        }
+        return get(Math.min(position + aInDistance - 1, size - 1));
+    }
+
+    @Override
+    public void mark() {
+        mark = position;
+    }
+
+    @Override
+    public void reset() {
+        if (mark < 0) {
+            throw new IllegalStateException("Tokenizer was not marked");
+        }
+        position = mark;
+        mark = -1;
+    }
+
+    @Override
+    public void unmark() {
+        mark = -1;
+    }
+
+    /**
+     * The number of entries in the tape, including errors and the end of
+     * file token.
+     */
+    public int size() {
+        return size;
+    }
+
+    public Token<T, ?> get(int aInIndex)
+            throws UnrecognizedCharacterSequenceException {
+        if (aInIndex < 0 || aInIndex >= size) {
+            throw new IndexOutOfBoundsException(String.valueOf(aInIndex));
+        }
+        if (items[aInIndex] instanceof UnrecognizedCharacterSequenceException) {
+            throw (UnrecognizedCharacterSequenceException) items[aInIndex];
+        }
+
+        @SuppressWarnings("unchecked")
+        Token<T, ?> lToken = (Token<T, ?>) items[aInIndex];
+        return lToken;
+    }
+
+    public int getStart(int aInIndex) {
+        return starts[aInIndex];
+    }
+
+    public int getEnd(int aInIndex) {
+        return ends[aInIndex];
+    }
+
+    @Override
+    public Iterator<Token<T, ?>> iterator() {
+        return new Iterator<Token<T, ?>>() {
+            int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return next < size;
+            }
+
+            @Override
+            public Token<T, ?> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+
+                try {
+                    return get(next++);
+                }
+                catch (UnrecognizedCharacterSequenceException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+    }
+}
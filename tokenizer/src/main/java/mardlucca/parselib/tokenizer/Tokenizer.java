@@ -19,6 +19,7 @@
 package mardlucca.parselib.tokenizer;
 
 import java.io.IOException;
+import java.io.Reader;
 
 public interface Tokenizer<T> extends Iterable<Token<T, ?>> {
     Token<T, ?> nextToken(Object aInSyntacticContext)
@@ -27,6 +28,14 @@ public interface Tokenizer<T> extends Iterable<Token<T, ?>> {
     Token<T, ?> peekToken(Object aInSyntacticContext)
             throws IOException, UnrecognizedCharacterSequenceException;
 
+    /**
+     * Starts over, tokenizing a new input, so the tokenizer can be reused.
+     * Returns false if this tokenizer can't do that.
+     */
+    default boolean restart(Reader aInReader) {
+        return false;
+    }
+
     default Token<T, ?> nextToken()
             throws IOException, UnrecognizedCharacterSequenceException {
         return nextToken(null);
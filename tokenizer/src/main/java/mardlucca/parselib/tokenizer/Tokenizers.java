@@ -0,0 +1,100 @@
+/*
+ * File: Tokenizers.java
+ *
+ * Copyright 2020 Marcio D. Lucca
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mardlucca.parselib.tokenizer;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Objects;
+
+/**
+ * Loops over the tokens of a tokenizer up to its end of file, shared by the
+ * tokenizers in this package. They are not part of {@link Tokenizer}, as
+ * implementations of it don't have to tell which token ends the input.
+ */
+final class Tokenizers {
+    private Tokenizers() {
+    }
+
+    static <T> int nextTokens(
+            Tokenizer<T> aInTokenizer, T aInEndOfFile,
+            Token<T, ?>[] aInTokens, int aInOffset, int aInLength)
+            throws IOException, UnrecognizedCharacterSequenceException {
+        for (int i = 0; i < aInLength; i++) {
+            Token<T, ?> lToken = aInTokenizer.nextToken(null);
+            aInTokens[aInOffset + i] = lToken;
+            if (Objects.equals(lToken.getId(), aInEndOfFile)) {
+                return i + 1;
+            }
+        }
+        return aInLength;
+    }
+
+    static <T> void tokenize(
+            Tokenizer<T> aInTokenizer, T aInEndOfFile, TokenSink<T> aInSink)
+            throws IOException, UnrecognizedCharacterSequenceException {
+        Token<T, ?> lToken;
+        do {
+            lToken = aInTokenizer.nextToken(null);
+            aInSink.accept(lToken);
+        }
+        while (!Objects.equals(lToken.getId(), aInEndOfFile));
+    }
+
+    /**
+     * Iterates over the remaining tokens, up to and including the end of
+     * file. Exceptions thrown by the tokenizer are wrapped in a
+     * {@link RuntimeException}.
+     */
+    static <T> Iterator<Token<T, ?>> iterator(
+            Tokenizer<T> aInTokenizer, T aInEndOfFile) {
+        return new Iterator<Token<T, ?>>() {
+            Token<T, ?> next;
+
+            boolean reachedTheEnd = false;
+
+            @Override
+            public boolean hasNext() {
+                if (next == null) {
+                    if (reachedTheEnd) { return false; }
+
+                    try {
+                        next = aInTokenizer.nextToken();
+                        reachedTheEnd =
+                                Objects.equals(next.getId(), aInEndOfFile);
+                    }
+                    catch (IOException
+                        | UnrecognizedCharacterSequenceException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+
+                return true;
+            }
+
+            @Override
+            public Token<T, ?> next() {
+                if (!hasNext()) { return null; }
+
+                Token<T, ?> lNext = next;
+                next = null;
+                return lNext;
+            }
+        };
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * File: TransformCache.java
+ *
+ * Copyright 2020 Marcio D. Lucca
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mardlucca.parselib.tokenizer;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Bounded cache of transformed token values, keyed by the token text, used by
+ * memoizing recognizers (see {@link Recognizers#memoizing}). The least
+ * recently used entries are evicted first. A cache may be shared by several
+ * tokenizers, even running on different threads.
+ */
+public class TransformCache<V> {
+    private final Map<String, V> entries;
+
+    private long hits;
+
+    private long misses;
+
+    public TransformCache(int aInMaxSize) {
+        if (aInMaxSize < 1) {
+            throw new IllegalArgumentException(
+                    "Cache size must be positive: " + aInMaxSize);
+        }
+        entries = new LinkedHashMap<String, V>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, V> aInEntry) {
+                return size() > aInMaxSize;
+            }
+        };
+    }
+
+    /**
+     * Returns the value cached for {@code aInText}, computing and caching it
+     * if needed. The computation happens outside of any lock, so concurrent
+     * misses on the same text may compute it more than once.
+     */
+    public V get(String aInText, Function<String, ? extends V> aInCompute) {
+        synchronized (this) {
+            V lValue = entries.get(aInText);
+            if (lValue != null || entries.containsKey(aInText)) {
+                hits++;
+                return lValue;
+            }
+            misses++;
+        }
+
+        V lValue = aInCompute.apply(aInText);
+        synchronized (this) {
+            entries.put(aInText, lValue);
+        }
+        return lValue;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+}
@@ -24,12 +24,21 @@ public class TransformingRecognizer<T, VF, VT>
         implements TokenRecognizer<T, VT> {
     private TokenRecognizer<T, VF> delegate;
     private Function<? super VF, ? extends VT> transform;
+    private TransformCache<VT> cache;
 
     TransformingRecognizer(
             TokenRecognizer<T, VF> aInDelegate,
             Function<? super VF, ? extends VT> aInTransform) {
+        this(aInDelegate, aInTransform, null);
+    }
+
+    TransformingRecognizer(
+            TokenRecognizer<T, VF> aInDelegate,
+            Function<? super VF, ? extends VT> aInTransform,
+            TransformCache<VT> aInCache) {
         delegate = aInDelegate;
         transform = aInTransform;
+        cache = aInCache;
     }
 
     @Override
@@ -45,13 +54,20 @@ public class TransformingRecognizer<T, VF, VT>
     @Override
     public Token<T, VT> getToken(String aInCharSequence) {
         Token<T, VF> lToken = delegate.getToken(aInCharSequence);
-        VF lValue = lToken.getValue();
-        return new Token<>(
-                lToken.getId(),
-                aInCharSequence,
-                lValue == null
-                        ? null
-                        : transform.apply(lValue));
+        return new LazyToken<T, VT>(lToken.getId(), aInCharSequence) {
+            @Override
+            protected VT computeValue() {
+                return cache == null
+                        ? transform(lToken)
+                        : cache.get(aInCharSequence,
+                                aInText -> transform(lToken));
+            }
+        };
+    }
+
+    private VT transform(Token<T, VF> aInToken) {
+        VF lValue = aInToken.getValue();
+        return lValue == null ? null : transform.apply(lValue);
     }
 
     @Override
@@ -68,4 +84,42 @@ public class TransformingRecognizer<T, VF, VT>
     public boolean isIgnored() {
         return delegate.isIgnored();
     }
+
+    @Override
+    public T getTokenId() {
+        return delegate.getTokenId();
+    }
+
+    @Override
+    public boolean isCommitted() {
+        return delegate.isCommitted();
+    }
+
+    @Override
+    public int scan(char[] aInChars, int aInStart, int aInEnd) {
+        return delegate.scan(aInChars, aInStart, aInEnd);
+    }
+
+    @Override
+    public boolean isTextRequired() {
+        // cached values are looked up by text
+        return cache != null || delegate.isTextRequired();
+    }
+
+    @Override
+    public boolean isContextSensitive() {
+        return delegate.isContextSensitive();
+    }
+
+    @Override
+    public TokenRecognizer<T, VT> forContext(Object aInSyntacticContext) {
+        TokenRecognizer<T, VF> lDelegate =
+                delegate.forContext(aInSyntacticContext);
+        if (lDelegate == delegate) {
+            return this;
+        }
+        return lDelegate == null
+                ? null
+                : new TransformingRecognizer<>(lDelegate, transform, cache);
+    }
 }
@@ -19,6 +19,9 @@
 package mardlucca.parselib.tokenizer;
 
 public class UnrecognizedCharacterSequenceException extends Exception {
+    public static final String DEFAULT_DETAIL =
+            "Unrecognized character sequence";
+
     private String sequence;
 
     private String detail;
@@ -29,10 +32,27 @@ public class UnrecognizedCharacterSequenceException extends Exception {
         detail = aInDetail;
     }
 
+    /**
+     * @param aInWritableStackTrace false to skip filling in the stack trace,
+     *      which makes the exception much cheaper to create
+     */
+    public UnrecognizedCharacterSequenceException(String aInSequence,
+        String aInDetail, boolean aInWritableStackTrace) {
+        super(null, null, true, aInWritableStackTrace);
+        sequence = aInSequence;
+        detail = aInDetail;
+    }
+
+    public String getSequence() {
+        return sequence;
+    }
+
+    public String getDetail() {
+        return detail;
+    }
+
     @Override
     public String getMessage() {
-        return detail == null
-            ? "Unrecognized character sequence: " + sequence
-            : detail + ": " + sequence;
+        return (detail == null ? DEFAULT_DETAIL : detail) + ": " + sequence;
     }
 }
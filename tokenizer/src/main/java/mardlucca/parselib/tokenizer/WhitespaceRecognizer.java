@@ -47,6 +47,14 @@ public class WhitespaceRecognizer<T> extends BaseTokenRecognizer<T, String> {
         return MatchResult.NOT_A_MATCH;
     }
 
+    @Override
+    public int scan(char[] aInChars, int aInStart, int aInEnd) {
+        return reading
+                ? CharRuns.asciiRun(aInChars, aInStart, aInEnd,
+                        CharRuns.WHITESPACE)
+                : 0;
+    }
+
     @Override
     public void reset() {
         super.reset();
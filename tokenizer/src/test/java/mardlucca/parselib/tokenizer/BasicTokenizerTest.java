@@ -18,13 +18,18 @@
 
 package mardlucca.parselib.tokenizer;
 
+import org.apache.commons.lang3.StringUtils;
 import org.junit.Before;
 import org.junit.Test;
 
 import java.io.IOException;
 import java.io.Reader;
 import java.io.StringReader;
+import java.nio.CharBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import static mardlucca.parselib.tokenizer.Recognizers.*;
@@ -141,6 +146,82 @@ public class BasicTokenizerTest
         assertEquals(TestToken.EOF, lTokenizer.nextToken().getId());
     }
 
+    @Test
+    public void testPeekAhead() throws Exception
+    {
+        BasicTokenizer<TestToken> lTokenizer = builder.lookahead(2).build(
+                new StringReader("a = b == c"));
+
+        test(lTokenizer.peekToken(3, null), TestToken.IDENTIFIER,
+                "b", "b", String.class);
+        test(lTokenizer.peekToken(1, null), TestToken.IDENTIFIER,
+                "a", "a", String.class);
+        test(lTokenizer.nextToken(), TestToken.IDENTIFIER,
+                "a", "a", String.class);
+        test(lTokenizer.peekToken(), TestToken.ASSIGNMENT,
+                "=", "=", String.class);
+        test(lTokenizer.peekToken(3, null), TestToken.EQUALS,
+                "==", "==", String.class);
+        assertEquals(TestToken.EOF, lTokenizer.peekToken(6, null).getId());
+        test(lTokenizer.nextToken(), TestToken.ASSIGNMENT,
+                "=", "=", String.class);
+        test(lTokenizer.nextToken(), TestToken.IDENTIFIER,
+                "b", "b", String.class);
+        test(lTokenizer.nextToken(), TestToken.EQUALS,
+                "==", "==", String.class);
+        test(lTokenizer.nextToken(), TestToken.IDENTIFIER,
+                "c", "c", String.class);
+        assertEquals(TestToken.EOF, lTokenizer.nextToken().getId());
+        assertEquals(TestToken.EOF, lTokenizer.nextToken().getId());
+    }
+
+    @Test
+    public void testMarkAndReset() throws Exception
+    {
+        BasicTokenizer<TestToken> lTokenizer = builder.lookahead(1).build(
+                new StringReader("a = b == c"));
+
+        test(lTokenizer.nextToken(), TestToken.IDENTIFIER,
+                "a", "a", String.class);
+        lTokenizer.mark();
+        test(lTokenizer.nextToken(), TestToken.ASSIGNMENT,
+                "=", "=", String.class);
+        test(lTokenizer.peekToken(), TestToken.IDENTIFIER,
+                "b", "b", String.class);
+        test(lTokenizer.nextToken(), TestToken.IDENTIFIER,
+                "b", "b", String.class);
+        lTokenizer.reset();
+
+        test(lTokenizer.nextToken(), TestToken.ASSIGNMENT,
+                "=", "=", String.class);
+        lTokenizer.mark();
+        test(lTokenizer.nextToken(), TestToken.IDENTIFIER,
+                "b", "b", String.class);
+        test(lTokenizer.nextToken(), TestToken.EQUALS,
+                "==", "==", String.class);
+        lTokenizer.reset();
+
+        test(lTokenizer.nextToken(), TestToken.IDENTIFIER,
+                "b", "b", String.class);
+        lTokenizer.mark();
+        test(lTokenizer.nextToken(), TestToken.EQUALS,
+                "==", "==", String.class);
+        lTokenizer.unmark();
+        test(lTokenizer.nextToken(), TestToken.IDENTIFIER,
+                "c", "c", String.class);
+        assertEquals(TestToken.EOF, lTokenizer.nextToken().getId());
+
+        try
+        {
+            lTokenizer.reset();
+            fail();
+        }
+        catch (IllegalStateException e)
+        {
+            // expected as there is no mark
+        }
+    }
+
     @Test
     public void testUnrecognizedSequence()
         throws IOException, UnrecognizedCharacterSequenceException
@@ -186,6 +267,60 @@ public class BasicTokenizerTest
         }
     }
 
+    @Test
+    public void testErrorToken()
+            throws IOException, UnrecognizedCharacterSequenceException
+    {
+        BasicTokenizer<TestToken> lTokenizer = builder
+                .errorToken(TestToken.ERROR)
+                .build(new StringReader("[12.3f \"abc\n/*a"));
+
+        // error tokens cover the text they report, and the tokens after them
+        // start where they end
+        test(lTokenizer.nextToken(), TestToken.ERROR,
+                "[", "Unrecognized character sequence", String.class);
+        testOffsets(lTokenizer, 0, 1);
+        test(lTokenizer.nextToken(), TestToken.NUMBER,
+                "12.3f", 12.3f, Float.class);
+        testOffsets(lTokenizer, 1, 6);
+        test(lTokenizer.nextToken(), TestToken.ERROR,
+                "\"abc\n", "Unterminated string literal", String.class);
+        testOffsets(lTokenizer, 7, 12);
+        test(lTokenizer.nextToken(), TestToken.ERROR,
+                "/*a", "Unclosed comment", String.class);
+        testOffsets(lTokenizer, 12, 15);
+        assertEquals(TestToken.EOF, lTokenizer.nextToken().getId());
+        testOffsets(lTokenizer, 15, 15);
+    }
+
+    private static void testOffsets(
+            BasicTokenizer<?> aInTokenizer, long aInStart, long aInEnd)
+    {
+        assertEquals(aInStart, aInTokenizer.getTokenStart());
+        assertEquals(aInEnd, aInTokenizer.getTokenEnd());
+    }
+
+    @Test
+    public void testStacklessExceptions() throws IOException
+    {
+        BasicTokenizer<TestToken> lTokenizer = builder
+                .stackTraces(false)
+                .build(new StringReader("["));
+        try
+        {
+            lTokenizer.nextToken();
+            fail();
+        }
+        catch (UnrecognizedCharacterSequenceException e)
+        {
+            assertEquals("Unrecognized character sequence: [",
+                    e.getMessage());
+            assertEquals("[", e.getSequence());
+            assertNull(e.getDetail());
+            assertEquals(0, e.getStackTrace().length);
+        }
+    }
+
     @Test
     public void testToStringAndIterator()
     {
@@ -364,6 +499,157 @@ public class BasicTokenizerTest
         }
     }
 
+    @Test
+    public void testPruneUnexpected()
+            throws IOException, UnrecognizedCharacterSequenceException {
+        SyntacticContext<TestToken> lExpectsIdentifier =
+                aInTokenId -> aInTokenId == TestToken.IDENTIFIER;
+        SyntacticContext<TestToken> lExpectsAssignment =
+                aInTokenId -> aInTokenId == TestToken.ASSIGNMENT;
+
+        BasicTokenizer<TestToken> lTokenizer = builder.pruneUnexpected(true)
+                .build(new StringReader("if == if"));
+        test(lTokenizer.nextToken(lExpectsIdentifier), TestToken.IDENTIFIER,
+                "if", "if", String.class);
+        test(lTokenizer.nextToken(lExpectsAssignment), TestToken.ASSIGNMENT,
+                "=", "=", String.class);
+        test(lTokenizer.nextToken(lExpectsAssignment), TestToken.ASSIGNMENT,
+                "=", "=", String.class);
+        // nothing expected matches, so all recognizers are tried
+        test(lTokenizer.nextToken(lExpectsAssignment), TestToken.IF,
+                "if", "if", String.class);
+        assertEquals(TestToken.EOF,
+                lTokenizer.nextToken(lExpectsAssignment).getId());
+
+        // peeked tokens are never pruned
+        lTokenizer = builder.build(new StringReader("=="));
+        test(lTokenizer.peekToken(lExpectsAssignment), TestToken.EQUALS,
+                "==", "==", String.class);
+        test(lTokenizer.nextToken(lExpectsAssignment), TestToken.EQUALS,
+                "==", "==", String.class);
+    }
+
+    @Test
+    public void testConditionEvaluatedOncePerToken()
+            throws IOException, UnrecognizedCharacterSequenceException {
+        int[] lEvaluations = new int[1];
+        builder = new BasicTokenizer.Builder<TestToken>()
+                .recognize(whiteSpaces())
+                .recognize(conditional(
+                        identifiers(TestToken.IDENTIFIER),
+                        aInContext -> {
+                            lEvaluations[0]++;
+                            return aInContext.equals(10);
+                        }))
+                .endOfFile(TestToken.EOF);
+
+        BasicTokenizer<TestToken> lTokenizer = builder.build(
+                new StringReader("abc de"));
+        test(lTokenizer.nextToken(10), TestToken.IDENTIFIER,
+                "abc", "abc", String.class);
+        test(lTokenizer.nextToken(10), TestToken.IDENTIFIER,
+                "de", "de", String.class);
+        assertEquals(TestToken.EOF, lTokenizer.nextToken(10).getId());
+        // once for each identifier and once for the white space in between
+        assertEquals(3, lEvaluations[0]);
+
+        lEvaluations[0] = 0;
+        lTokenizer = builder.cacheConditions(true).build(
+                new StringReader("abc de"));
+        test(lTokenizer.nextToken(10), TestToken.IDENTIFIER,
+                "abc", "abc", String.class);
+        test(lTokenizer.nextToken(10), TestToken.IDENTIFIER,
+                "de", "de", String.class);
+        assertEquals(TestToken.EOF, lTokenizer.nextToken(10).getId());
+        assertEquals(1, lEvaluations[0]);
+
+        try
+        {
+            lTokenizer = builder.build(new StringReader("abc"));
+            lTokenizer.nextToken(11);
+            fail();
+        }
+        catch (UnrecognizedCharacterSequenceException e)
+        {
+            assertEquals("Unrecognized character sequence: a",
+                    e.getMessage());
+        }
+    }
+
+    @Test
+    public void testModes()
+            throws IOException, UnrecognizedCharacterSequenceException {
+        builder = new BasicTokenizer.Builder<TestToken>()
+                .recognize(whiteSpaces())
+                .recognize(identifiers(TestToken.IDENTIFIER))
+                .recognize(symbol("(", TestToken.OPEN_PARENTHESIS))
+                .pushMode(TestToken.OPEN_PARENTHESIS, "expression")
+                .mode("expression")
+                .recognize(numbers(TestToken.NUMBER))
+                .recognize(symbol("+", TestToken.PLUS))
+                .recognize(symbol("(", TestToken.OPEN_PARENTHESIS))
+                .recognize(symbol(")", TestToken.CLOSE_PARENTHESIS))
+                .pushMode(TestToken.OPEN_PARENTHESIS, "expression")
+                .popMode(TestToken.CLOSE_PARENTHESIS)
+                .endOfFile(TestToken.EOF);
+
+        BasicTokenizer<TestToken> lTokenizer = builder.build(
+                new StringReader("a(1+(2))b"));
+        test(lTokenizer.nextToken(), TestToken.IDENTIFIER,
+                "a", "a", String.class);
+        test(lTokenizer.nextToken(), TestToken.OPEN_PARENTHESIS,
+                "(", "(", String.class);
+        test(lTokenizer.peekToken(), TestToken.NUMBER,
+                "1", 1, Integer.class);
+        test(lTokenizer.nextToken(), TestToken.NUMBER,
+                "1", 1, Integer.class);
+        test(lTokenizer.nextToken(), TestToken.PLUS,
+                "+", "+", String.class);
+        test(lTokenizer.nextToken(), TestToken.OPEN_PARENTHESIS,
+                "(", "(", String.class);
+        test(lTokenizer.nextToken(), TestToken.NUMBER,
+                "2", 2, Integer.class);
+        test(lTokenizer.nextToken(), TestToken.CLOSE_PARENTHESIS,
+                ")", ")", String.class);
+        test(lTokenizer.nextToken(), TestToken.CLOSE_PARENTHESIS,
+                ")", ")", String.class);
+        test(lTokenizer.nextToken(), TestToken.IDENTIFIER,
+                "b", "b", String.class);
+        assertEquals(TestToken.EOF, lTokenizer.nextToken().getId());
+
+        lTokenizer = builder.build(new StringReader("(a"));
+        test(lTokenizer.nextToken(), TestToken.OPEN_PARENTHESIS,
+                "(", "(", String.class);
+        try
+        {
+            lTokenizer.nextToken();
+            fail();
+        }
+        catch (UnrecognizedCharacterSequenceException e)
+        {
+            assertEquals("Unrecognized character sequence: a",
+                    e.getMessage());
+        }
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testUnknownMode()
+    {
+        builder.pushMode(TestToken.OPEN_PARENTHESIS, "unknown")
+                .build(new StringReader(""));
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testIgnoredTokenSwitchingModes()
+    {
+        new BasicTokenizer.Builder<TestToken>()
+                .recognize(() -> new WhitespaceRecognizer<>(
+                        TestToken.WHITESPACE, true))
+                .popMode(TestToken.WHITESPACE)
+                .endOfFile(TestToken.EOF)
+                .build(new StringReader(""));
+    }
+
     @Test
     public void testWhiteSpaceNotIgnored()
             throws IOException, UnrecognizedCharacterSequenceException {
@@ -380,4 +666,942 @@ public class BasicTokenizerTest
                 Integer.class);
         assertEquals(TestToken.EOF, lTokenizer.nextToken().getId());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testParallelTokenize()
+            throws IOException, UnrecognizedCharacterSequenceException
+    {
+        // new lines are not always safe boundaries: comments and strings may
+        // span across lines
+        String lInput = "if(a==10)\n"
+                + "b = \"x\ny\" /* one\ntwo\n */ for\n"
+                + "c = 'd' // e\n"
+                + "f = 2.5e3\n\n\n"
+                + "# g\n"
+                + "/* h\n\n\n\n*/";
+
+        for (int lChunkSize = 1; lChunkSize <= lInput.length() + 1;
+             lChunkSize++)
+        {
+            TokenTape<TestToken> lTape = new ParallelTokenizer<>(
+                    builder, c -> c == '\n', lChunkSize).tokenize(lInput);
+            BasicTokenizer<TestToken> lTokenizer =
+                    builder.build(new StringReader(lInput));
+            for (int i = 0; i < lTape.size(); i++)
+            {
+                String lExpected;
+                try
+                {
+                    Token<TestToken, ?> lToken = lTokenizer.nextToken();
+                    lExpected = lToken.getId() + lToken.getCharSequence();
+                }
+                catch (UnrecognizedCharacterSequenceException e)
+                {
+                    lExpected = e.getMessage();
+                }
+
+                String lActual;
+                try
+                {
+                    Token<TestToken, ?> lToken = lTape.get(i);
+                    lActual = lToken.getId() + lToken.getCharSequence();
+                }
+                catch (UnrecognizedCharacterSequenceException e)
+                {
+                    lActual = e.getMessage();
+                }
+                assertEquals("Chunk size " + lChunkSize, lExpected, lActual);
+            }
+            assertEquals(TestToken.EOF,
+                    lTape.get(lTape.size() - 1).getId());
+            assertEquals(TestToken.EOF, lTokenizer.nextToken().getId());
+            assertEquals(0, lTape.getStart(0));
+            assertEquals(2, lTape.getEnd(0));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParallelTokenizeWithModes()
+    {
+        new ParallelTokenizer<>(builder.mode("other"), c -> c == '\n', 10);
+    }
+
+    @Test
+    public void testParallelTokenizeWithContext()
+    {
+        try
+        {
+            new ParallelTokenizer<>(builder.pruneUnexpected(true),
+                    c -> c == '\n', 10);
+            fail();
+        }
+        catch (IllegalArgumentException e)
+        {
+            // expected
+        }
+
+        setUp();
+        builder.recognize(conditional(
+                characters(TestToken.CHARACTER), aInContext -> true));
+        try
+        {
+            new ParallelTokenizer<>(builder, c -> c == '\n', 10);
+            fail();
+        }
+        catch (IllegalArgumentException e)
+        {
+            // expected
+        }
+    }
+
+    @Test
+    public void testParallelTokenizeMovesPastErrors()
+            throws IOException, UnrecognizedCharacterSequenceException
+    {
+        TokenTape<TestToken> lTape = new ParallelTokenizer<>(
+                builder, c -> c == '\n', 10).tokenize("a # b");
+        assertEquals(TestToken.IDENTIFIER, lTape.nextToken().getId());
+        try
+        {
+            lTape.nextToken();
+            fail();
+        }
+        catch (UnrecognizedCharacterSequenceException e)
+        {
+            // expected
+        }
+        test(lTape.nextToken(), TestToken.IDENTIFIER, "b", "b",
+                String.class);
+        assertEquals(TestToken.EOF, lTape.nextToken().getId());
+        assertEquals(TestToken.EOF, lTape.nextToken().getId());
+    }
+
+    @Test
+    public void testPipelined()
+            throws IOException, UnrecognizedCharacterSequenceException
+    {
+        StringBuilder lInput = new StringBuilder();
+        for (int i = 0; i < 100; i++)
+        {
+            lInput.append("if(a").append(i).append("==\"x\") # b = 'c'\n");
+        }
+
+        Tokenizer<TestToken> lBuilt = builder.pipelineCapacity(4)
+                .buildPipelined(new StringReader(lInput.toString()));
+        assertTrue(lBuilt instanceof PipelinedTokenizer);
+        // can't be marked
+        assertFalse(lBuilt instanceof LookaheadTokenizer);
+        PipelinedTokenizer<TestToken> lPipelined =
+                (PipelinedTokenizer<TestToken>) lBuilt;
+        BasicTokenizer<TestToken> lTokenizer =
+                builder.build(new StringReader(lInput.toString()));
+
+        assertEquals(TestToken.IF, lPipelined.peekToken(1, null).getId());
+        assertEquals(TestToken.IDENTIFIER,
+                lPipelined.peekToken(3, null).getId());
+        try
+        {
+            lPipelined.peekToken(0, null);
+            fail();
+        }
+        catch (IllegalArgumentException e)
+        {
+            assertEquals("Distance must be at least 1: 0", e.getMessage());
+        }
+        String lExpected;
+        String lActual;
+        do
+        {
+            try
+            {
+                Token<TestToken, ?> lToken = lTokenizer.nextToken();
+                lExpected = lToken.getId() + lToken.getCharSequence();
+            }
+            catch (UnrecognizedCharacterSequenceException e)
+            {
+                lExpected = e.getMessage();
+            }
+
+            try
+            {
+                Token<TestToken, ?> lToken = lPipelined.nextToken();
+                lActual = lToken.getId() + lToken.getCharSequence();
+            }
+            catch (UnrecognizedCharacterSequenceException e)
+            {
+                lActual = e.getMessage();
+            }
+            assertEquals(lExpected, lActual);
+        }
+        while (!lExpected.startsWith(TestToken.EOF.toString()));
+        assertEquals(TestToken.EOF, lPipelined.nextToken().getId());
+        lPipelined.close();
+    }
+
+    @Test
+    public void testPipelinedProducerParks()
+            throws Exception
+    {
+        PipelinedTokenizer<TestToken> lPipelined =
+                (PipelinedTokenizer<TestToken>) builder.pipelineCapacity(2)
+                        .buildPipelined(new StringReader("a b c d e f g"));
+        assertEquals(TestToken.IDENTIFIER, lPipelined.nextToken().getId());
+
+        // the ring is full and the consumer stopped reading
+        Thread lProducer = lPipelined.getProducer();
+        for (int i = 0; i < 500
+                && lProducer.getState() != Thread.State.WAITING; i++)
+        {
+            Thread.sleep(10);
+        }
+        assertEquals(Thread.State.WAITING, lProducer.getState());
+
+        List<Token<TestToken, ?>> lTokens = new ArrayList<>();
+        lPipelined.forEach(lTokens::add);
+        assertEquals(7, lTokens.size());
+        assertEquals(TestToken.EOF, lTokens.get(6).getId());
+        lProducer.join(5000);
+        assertFalse(lProducer.isAlive());
+    }
+
+    @Test
+    public void testPipelinedWithContextSensitiveRecognizers()
+    {
+        builder.recognize(conditional(
+                characters(TestToken.CHARACTER), aInContext -> true));
+        assertTrue(builder.buildPipelined(new StringReader(""))
+                instanceof BasicTokenizer);
+    }
+
+    @Test
+    public void testNextTokens()
+            throws IOException, UnrecognizedCharacterSequenceException
+    {
+        BasicTokenizer<TestToken> lTokenizer =
+                builder.build(new StringReader("if(a==10) b"));
+        @SuppressWarnings("unchecked")
+        Token<TestToken, ?>[] lTokens = new Token[5];
+
+        test(lTokenizer.peekToken(), TestToken.IF, "if", "if", String.class);
+        assertEquals(4, lTokenizer.nextTokens(lTokens, 1, 4));
+        assertNull(lTokens[0]);
+        assertEquals(TestToken.IF, lTokens[1].getId());
+        assertEquals(TestToken.OPEN_PARENTHESIS, lTokens[2].getId());
+        assertEquals(TestToken.IDENTIFIER, lTokens[3].getId());
+        assertEquals(TestToken.EQUALS, lTokens[4].getId());
+
+        assertEquals(4, lTokenizer.nextTokens(lTokens, 0, 5));
+        assertEquals(TestToken.NUMBER, lTokens[0].getId());
+        assertEquals(TestToken.CLOSE_PARENTHESIS, lTokens[1].getId());
+        assertEquals(TestToken.IDENTIFIER, lTokens[2].getId());
+        assertEquals(TestToken.EOF, lTokens[3].getId());
+
+        TokenTape<TestToken> lTape = new ParallelTokenizer<>(
+                builder, c -> c == ' ', 2).tokenize("if(a==10) b");
+        assertEquals(5, lTape.nextTokens(lTokens, 0, 5));
+        assertEquals(3, lTape.nextTokens(lTokens, 0, 5));
+        assertEquals(TestToken.EOF, lTokens[2].getId());
+    }
+
+    @Test
+    public void testTokenizeToSink()
+            throws IOException, UnrecognizedCharacterSequenceException
+    {
+        List<TestToken> lTokens = new ArrayList<>();
+        builder.build(new StringReader("if(a==10) b"))
+                .tokenize(aInToken -> lTokens.add(aInToken.getId()));
+        assertEquals(Arrays.asList(TestToken.IF, TestToken.OPEN_PARENTHESIS,
+                TestToken.IDENTIFIER, TestToken.EQUALS, TestToken.NUMBER,
+                TestToken.CLOSE_PARENTHESIS, TestToken.IDENTIFIER,
+                TestToken.EOF), lTokens);
+
+        lTokens.clear();
+        ((PipelinedTokenizer<TestToken>) builder.buildPipelined(
+                new StringReader("b")))
+                .tokenize(aInToken -> lTokens.add(aInToken.getId()));
+        assertEquals(Arrays.asList(TestToken.IDENTIFIER, TestToken.EOF),
+                lTokens);
+    }
+
+    @Test
+    public void testStreaming()
+            throws IOException, UnrecognizedCharacterSequenceException
+    {
+        BasicTokenizer<TestToken> lTokenizer = builder.streaming(true)
+                .build(new StringReader("if(a==10l) /* c */ 'b'"));
+
+        Token<TestToken, ?> lCursor = lTokenizer.nextToken();
+        assertTrue(lCursor instanceof MutableToken);
+        test(lCursor, TestToken.IF, "if", "if", String.class);
+        assertSame(lCursor, lTokenizer.nextToken());
+        test(lCursor, TestToken.OPEN_PARENTHESIS, "(", "(", String.class);
+        assertSame(lCursor, lTokenizer.nextToken());
+        assertEquals("a", lCursor.getCharSequence());
+        assertSame(lCursor, lTokenizer.nextToken());
+        assertEquals(TestToken.EQUALS, lCursor.getId());
+
+        // peeked tokens are buffered, so they are not cursors
+        Token<TestToken, ?> lPeeked = lTokenizer.peekToken();
+        assertSame(lPeeked, lTokenizer.nextToken());
+        test(lPeeked, TestToken.NUMBER, "10l", 10L, Long.class);
+
+        assertSame(lCursor, lTokenizer.nextToken());
+        MutableToken<?> lMutableToken = (MutableToken<?>) lCursor;
+        assertEquals(TestToken.CLOSE_PARENTHESIS, lCursor.getId());
+        assertEquals(9, lMutableToken.getStart());
+        assertEquals(10, lMutableToken.getEnd());
+
+        assertSame(lCursor, lTokenizer.nextToken());
+        assertEquals(TestToken.CHARACTER, lCursor.getId());
+        assertEquals(3, lMutableToken.getText().length());
+        assertEquals('b', lMutableToken.getText().charAt(1));
+        assertEquals('b', lCursor.getValue());
+        assertEquals(19, lMutableToken.getStart());
+        assertEquals(22, lMutableToken.getEnd());
+
+        assertSame(lCursor, lTokenizer.nextToken());
+        assertEquals(TestToken.EOF, lCursor.getId());
+        assertNull(lCursor.getCharSequence());
+        assertNull(lCursor.getValue());
+    }
+
+    @Test
+    public void testLazyValues()
+            throws IOException, UnrecognizedCharacterSequenceException
+    {
+        List<Object> lTransformed = new ArrayList<>();
+        builder = new BasicTokenizer.Builder<TestToken>()
+                .recognize(whiteSpaces())
+                .recognize(transforming(numbers(TestToken.NUMBER),
+                        aInNumber -> {
+                            lTransformed.add(aInNumber);
+                            return aInNumber;
+                        }))
+                .endOfFile(TestToken.EOF);
+
+        BasicTokenizer<TestToken> lTokenizer = builder.build(
+                new StringReader("0x1F 10l 2.5f 3"));
+        Token<TestToken, ?> lHexadecimal = lTokenizer.nextToken();
+        Token<TestToken, ?> lLong = lTokenizer.nextToken();
+        Token<TestToken, ?> lFloat = lTokenizer.nextToken();
+        Token<TestToken, ?> lInteger = lTokenizer.nextToken();
+        assertEquals(TestToken.EOF, lTokenizer.nextToken().getId());
+        assertTrue(lTransformed.isEmpty());
+
+        // the recognizer moved on, but values still decode as recognized
+        assertEquals(2.5f, lFloat.getValue());
+        assertEquals(31, lHexadecimal.getValue());
+        assertEquals(10L, lLong.getValue());
+        assertEquals(3, lTransformed.size());
+        assertEquals(31, lHexadecimal.getValue());
+        assertEquals(3, lTransformed.size());
+        assertEquals(3, lInteger.getValue());
+    }
+
+    @Test
+    public void testLazyValueErrors()
+            throws IOException, UnrecognizedCharacterSequenceException
+    {
+        BasicTokenizer<TestToken> lTokenizer =
+                builder.build("99999999999 a");
+
+        // the overflow is only found once the value is asked for
+        Token<TestToken, ?> lToken = lTokenizer.nextToken();
+        assertEquals(TestToken.NUMBER, lToken.getId());
+        assertEquals("99999999999", lToken.getCharSequence());
+        test(lTokenizer.nextToken(), TestToken.IDENTIFIER, "a", "a",
+                String.class);
+        try
+        {
+            lToken.getValue();
+            fail();
+        }
+        catch (NumberFormatException e)
+        {
+            // expected
+        }
+
+        // recognizers that don't opt in compute values right away
+        List<String> lComputed = new ArrayList<>();
+        lTokenizer = new BasicTokenizer.Builder<TestToken>()
+                .recognize(() -> new IdentifierRecognizer<TestToken>(
+                        TestToken.IDENTIFIER)
+                {
+                    @Override
+                    public String getValue(String aInCharSequence)
+                    {
+                        lComputed.add(aInCharSequence);
+                        return aInCharSequence;
+                    }
+                })
+                .endOfFile(TestToken.EOF)
+                .build("a");
+        lTokenizer.nextToken();
+        assertEquals(Arrays.asList("a"), lComputed);
+    }
+
+    @Test
+    public void testIntern()
+            throws IOException, UnrecognizedCharacterSequenceException
+    {
+        StringInterner lInterner = new StringInterner(16, 4);
+        builder.intern(lInterner);
+        BasicTokenizer<TestToken> lTokenizer =
+                builder.build(new StringReader("abc abcde abc abcde"));
+        Token<TestToken, ?> lFirst = lTokenizer.nextToken();
+        Token<TestToken, ?> lFirstLong = lTokenizer.nextToken();
+        Token<TestToken, ?> lSecond = lTokenizer.nextToken();
+        Token<TestToken, ?> lSecondLong = lTokenizer.nextToken();
+
+        assertEquals("abc", lFirst.getCharSequence());
+        assertSame(lFirst.getCharSequence(), lSecond.getCharSequence());
+        assertSame(lFirst.getCharSequence(), lSecond.getValue());
+        assertEquals(lFirstLong.getCharSequence(),
+                lSecondLong.getCharSequence());
+        assertNotSame(lFirstLong.getCharSequence(),
+                lSecondLong.getCharSequence());
+
+        // shared across tokenizers, including streaming ones
+        lTokenizer = builder.streaming(true)
+                .build(new StringReader("abc"));
+        assertSame(lFirst.getCharSequence(),
+                lTokenizer.nextToken().getCharSequence());
+        assertSame(lFirst.getCharSequence(), lInterner.intern("abc"));
+    }
+
+    @Test
+    public void testMemoizingRecognizer()
+            throws IOException, UnrecognizedCharacterSequenceException
+    {
+        List<String> lTransformed = new ArrayList<>();
+        TransformCache<String> lCache = new TransformCache<>(2);
+        builder = new BasicTokenizer.Builder<TestToken>()
+                .recognize(whiteSpaces())
+                .recognize(memoizing(identifiers(TestToken.IDENTIFIER),
+                        aInIdentifier -> {
+                            lTransformed.add(aInIdentifier);
+                            return aInIdentifier.toUpperCase();
+                        }, lCache))
+                .endOfFile(TestToken.EOF);
+
+        List<Object> lValues = new ArrayList<>();
+        builder.build(new StringReader("a b a a c b"))
+                .tokenize(aInToken -> lValues.add(aInToken.getValue()));
+        assertEquals(Arrays.asList("A", "B", "A", "A", "C", "B", null),
+                lValues);
+        // b was evicted by c
+        assertEquals(Arrays.asList("a", "b", "c", "b"), lTransformed);
+        assertEquals(2, lCache.getHits());
+        assertEquals(4, lCache.getMisses());
+        assertEquals(2, lCache.size());
+    }
+
+    @Test
+    public void testRestart()
+            throws IOException, UnrecognizedCharacterSequenceException
+    {
+        BasicTokenizer<TestToken> lTokenizer =
+                builder.build(new StringReader("if(a"));
+        assertEquals(TestToken.IF, lTokenizer.nextToken().getId());
+        lTokenizer.mark();
+        assertEquals(TestToken.OPEN_PARENTHESIS, lTokenizer.nextToken().getId());
+        assertEquals(TestToken.IDENTIFIER, lTokenizer.peekToken(1, null).getId());
+
+        assertTrue(lTokenizer.restart(new StringReader("10 b")));
+        test(lTokenizer.nextToken(), TestToken.NUMBER, "10", 10, Integer.class);
+        test(lTokenizer.nextToken(), TestToken.IDENTIFIER,
+                "b", "b", String.class);
+        assertEquals(TestToken.EOF, lTokenizer.nextToken().getId());
+
+        // from an in-memory input to a reader
+        lTokenizer = builder.build("a");
+        assertEquals(TestToken.IDENTIFIER, lTokenizer.nextToken().getId());
+        assertTrue(lTokenizer.restart(new StringReader("20")));
+        test(lTokenizer.nextToken(), TestToken.NUMBER, "20", 20, Integer.class);
+        assertEquals(TestToken.EOF, lTokenizer.nextToken().getId());
+    }
+
+    @Test
+    public void testInMemoryInputs()
+            throws IOException, UnrecognizedCharacterSequenceException
+    {
+        char[] lChars = "xxif(a==\"b\")yy".toCharArray();
+        List<BasicTokenizer<TestToken>> lTokenizers = Arrays.asList(
+                builder.build(lChars, 2, 10),
+                builder.build(new StringBuilder("if(a==\"b\")")),
+                builder.build(CharBuffer.wrap(lChars, 2, 10)),
+                builder.build(CharBuffer.wrap("xxif(a==\"b\")yy", 2, 12)),
+                builder.build(new CharSequenceReader("if(a==\"b\")")));
+        for (BasicTokenizer<TestToken> lTokenizer : lTokenizers)
+        {
+            test(lTokenizer.nextToken(), TestToken.IF, "if", "if",
+                    String.class);
+            test(lTokenizer.nextToken(), TestToken.OPEN_PARENTHESIS,
+                    "(", "(", String.class);
+            test(lTokenizer.nextToken(), TestToken.IDENTIFIER,
+                    "a", "a", String.class);
+            test(lTokenizer.nextToken(), TestToken.EQUALS,
+                    "==", "==", String.class);
+            test(lTokenizer.nextToken(), TestToken.STRING,
+                    "\"b\"", "b", String.class);
+            test(lTokenizer.nextToken(), TestToken.CLOSE_PARENTHESIS,
+                    ")", ")", String.class);
+            assertEquals(TestToken.EOF, lTokenizer.nextToken().getId());
+        }
+    }
+
+    @Test
+    public void testLongComments()
+            throws IOException, UnrecognizedCharacterSequenceException
+    {
+        StringBuilder lBuilder = new StringBuilder();
+        for (int i = 0; i < 10000; i++)
+        {
+            lBuilder.append("comment ").append(i).append(" * / ");
+        }
+        String lComment = lBuilder.toString();
+
+        BasicTokenizer<TestToken> lTokenizer = builder.build("a /*"
+                + lComment + "*/b // " + lComment + "\nc /*" + lComment);
+        test(lTokenizer.nextToken(), TestToken.IDENTIFIER,
+                "a", "a", String.class);
+        test(lTokenizer.nextToken(), TestToken.IDENTIFIER,
+                "b", "b", String.class);
+        test(lTokenizer.nextToken(), TestToken.IDENTIFIER,
+                "c", "c", String.class);
+        try
+        {
+            lTokenizer.nextToken();
+            fail();
+        }
+        catch (UnrecognizedCharacterSequenceException e)
+        {
+            assertTrue(e.getMessage().startsWith(
+                    "Unclosed comment: /*comment 0 * / comment 1"));
+            assertTrue(e.getMessage().endsWith("..."));
+            assertTrue(e.getMessage().length() < 100);
+        }
+        assertEquals(TestToken.EOF, lTokenizer.nextToken().getId());
+    }
+
+    @Test
+    public void testTrivia()
+            throws IOException, UnrecognizedCharacterSequenceException
+    {
+        String lInput = "a /* x */ b // c\n";
+        BasicTokenizer<TestToken> lTokenizer =
+                builder.trivia(true).build(lInput);
+
+        Token<TestToken, ?> lToken = lTokenizer.nextToken();
+        assertEquals(0, lToken.getTriviaCount());
+        lToken = lTokenizer.nextToken();
+        assertEquals("b", lToken.getCharSequence());
+        assertTrivia(lToken, 0, 1, 1, 2, 2, 7, 0, 9, 1);
+        lToken = lTokenizer.nextToken();
+        assertEquals(TestToken.EOF, lToken.getId());
+        assertTrivia(lToken, 0, 11, 1, 1, 12, 4, 0, 16, 1);
+
+        // the input can be rebuilt from tokens and trivia
+        StringBuilder lRebuilt = new StringBuilder();
+        lTokenizer = builder.streaming(true).build(lInput);
+        do
+        {
+            lToken = lTokenizer.nextToken();
+            for (int i = 0; i < lToken.getTriviaCount(); i++)
+            {
+                int lStart = (int) lToken.getTriviaStart(i);
+                lRebuilt.append(lInput, lStart,
+                        lStart + (int) lToken.getTriviaLength(i));
+            }
+            if (lToken.getCharSequence() != null)
+            {
+                lRebuilt.append(lToken.getCharSequence());
+            }
+        }
+        while (lToken.getId() != TestToken.EOF);
+        assertEquals(lInput, lRebuilt.toString());
+    }
+
+    @Test
+    public void testMaxTokenLength()
+            throws IOException, UnrecognizedCharacterSequenceException
+    {
+        BasicTokenizer<TestToken> lTokenizer = builder
+                .maxTokenLength(8)
+                .errorToken(TestToken.ERROR)
+                .build("abc abcdefghijkl /* longer than 8 */ b");
+
+        test(lTokenizer.nextToken(), TestToken.IDENTIFIER, "abc", "abc",
+                String.class);
+        test(lTokenizer.nextToken(), TestToken.ERROR, "abcdefghi...",
+                "Token longer than 8 characters", String.class);
+        test(lTokenizer.nextToken(), TestToken.IDENTIFIER, "jkl", "jkl",
+                String.class);
+        test(lTokenizer.nextToken(), TestToken.IDENTIFIER, "b", "b",
+                String.class);
+        assertEquals(TestToken.EOF, lTokenizer.nextToken().getId());
+    }
+
+    @Test
+    public void testMaxTokenLengthPastShorterMatch()
+            throws IOException, UnrecognizedCharacterSequenceException
+    {
+        // "1e+" could still become a longer number, but "1" alone is a match
+        BasicTokenizer<TestToken> lTokenizer =
+                new BasicTokenizer.Builder<TestToken>()
+                        .recognize(numbers(TestToken.NUMBER))
+                        .recognize(identifiers(TestToken.IDENTIFIER))
+                        .recognize(symbol("+", TestToken.PLUS))
+                        .maxTokenLength(2)
+                        .endOfFile(TestToken.EOF)
+                        .build("1e+");
+
+        test(lTokenizer.nextToken(), TestToken.NUMBER, "1", 1,
+                Integer.class);
+        test(lTokenizer.nextToken(), TestToken.IDENTIFIER, "e", "e",
+                String.class);
+        test(lTokenizer.nextToken(), TestToken.PLUS, "+", "+",
+                String.class);
+        assertEquals(TestToken.EOF, lTokenizer.nextToken().getId());
+    }
+
+    @Test
+    public void testMaxTokenLengthPastMatchAtLimit()
+            throws IOException, UnrecognizedCharacterSequenceException
+    {
+        // "12" is exactly as long as the limit, "12e" is only a partial match
+        // and "12345" is longer than the limit
+        BasicTokenizer<TestToken> lTokenizer =
+                new BasicTokenizer.Builder<TestToken>()
+                        .recognize(whiteSpaces())
+                        .recognize(numbers(TestToken.NUMBER))
+                        .recognize(identifiers(TestToken.IDENTIFIER))
+                        .recognize(symbol("+", TestToken.PLUS))
+                        .maxTokenLength(2)
+                        .errorToken(TestToken.ERROR)
+                        .endOfFile(TestToken.EOF)
+                        .build("12e+ 12345");
+
+        test(lTokenizer.nextToken(), TestToken.NUMBER, "12", 12,
+                Integer.class);
+        test(lTokenizer.nextToken(), TestToken.IDENTIFIER, "e", "e",
+                String.class);
+        test(lTokenizer.nextToken(), TestToken.PLUS, "+", "+",
+                String.class);
+        test(lTokenizer.nextToken(), TestToken.ERROR, "123...",
+                "Token longer than 2 characters", String.class);
+        test(lTokenizer.nextToken(), TestToken.NUMBER, "45", 45,
+                Integer.class);
+        assertEquals(TestToken.EOF, lTokenizer.nextToken().getId());
+    }
+
+    @Test
+    public void testUnboundedReader()
+            throws IOException, UnrecognizedCharacterSequenceException
+    {
+        // input much larger than the read buffer, which is never held in
+        // memory as a whole
+        final int lTokens = 100000;
+        Reader lReader = new Reader()
+        {
+            int count = 0;
+
+            @Override
+            public int read(char[] aInBuffer, int aInOffset, int aInLength)
+            {
+                if (count == lTokens)
+                {
+                    return -1;
+                }
+                int lLength = Math.min(aInLength, 2 * (lTokens - count));
+                for (int i = 0; i < lLength; i++)
+                {
+                    aInBuffer[aInOffset + i] = (i & 1) == 0 ? 'a' : ' ';
+                }
+                count += lLength / 2;
+                return lLength;
+            }
+
+            @Override
+            public void close()
+            {
+            }
+        };
+
+        BasicTokenizer<TestToken> lTokenizer =
+                builder.readBufferSize(64).build(lReader);
+        int lCount = 0;
+        while (lTokenizer.nextToken().getId() == TestToken.IDENTIFIER)
+        {
+            lCount++;
+        }
+        assertEquals(lTokens, lCount);
+    }
+
+    @Test
+    public void testSpooledFilesDeleted()
+            throws IOException, InterruptedException
+    {
+        SpooledString lClosed = new SpooledString(10);
+        lClosed.append("more than ten characters");
+        lClosed.finish();
+        Path lFile = lClosed.getFile();
+        assertTrue(Files.exists(lFile));
+        lClosed.close();
+        assertFalse(Files.exists(lFile));
+
+        // e.g. the value of a token that was peeked and never consumed
+        SpooledString lDropped = new SpooledString(10);
+        lDropped.append("more than ten characters");
+        lDropped.finish();
+        lFile = lDropped.getFile();
+        lDropped = null;
+        for (int i = 0; i < 500 && Files.exists(lFile); i++)
+        {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertFalse(Files.exists(lFile));
+    }
+
+    @Test
+    public void testStreamingStrings()
+            throws IOException, UnrecognizedCharacterSequenceException
+    {
+        builder = new BasicTokenizer.Builder<TestToken>()
+                .recognize(whiteSpaces())
+                .recognize(streamingStrings(TestToken.STRING, 1000))
+                .recognize(identifiers(TestToken.IDENTIFIER))
+                .endOfFile(TestToken.EOF);
+
+        StringBuilder lInput = new StringBuilder("\"a\\tb\" \"");
+        StringBuilder lExpected = new StringBuilder();
+        for (int i = 0; i < 10000; i++)
+        {
+            lInput.append("x\\n");
+            lExpected.append("x\n");
+        }
+        lInput.append("\" c");
+
+        BasicTokenizer<TestToken> lTokenizer = builder.build(
+                new StringReader(lInput.toString()));
+        Token<TestToken, ?> lToken = lTokenizer.nextToken();
+        assertEquals("\"a\\tb\"", lToken.getCharSequence());
+        SpooledString lValue = (SpooledString) lToken.getValue();
+        assertFalse(lValue.isSpooled());
+        assertEquals("a\tb", lValue.toString());
+
+        // the text of the long literal is not retained, and its value is
+        // moved to a file
+        lToken = lTokenizer.nextToken();
+        assertEquals(TestToken.STRING, lToken.getId());
+        assertTrue(lToken.getCharSequence().endsWith("..."));
+        assertTrue(lToken.getCharSequence().length() < 100);
+        try (SpooledString lSpooled = (SpooledString) lToken.getValue())
+        {
+            assertTrue(lSpooled.isSpooled());
+            assertEquals(20000, lSpooled.length());
+            assertEquals(lExpected.toString(), lSpooled.toString());
+        }
+        test(lTokenizer.nextToken(), TestToken.IDENTIFIER, "c", "c",
+                String.class);
+        assertEquals(TestToken.EOF, lTokenizer.nextToken().getId());
+
+        lTokenizer = builder.build("\"abc");
+        try
+        {
+            lTokenizer.nextToken();
+            fail();
+        }
+        catch (UnrecognizedCharacterSequenceException e)
+        {
+            assertTrue(e.getMessage().startsWith(
+                    "Unterminated string literal"));
+        }
+    }
+
+    @Test
+    public void testCustomEscapeCharacter()
+            throws IOException, UnrecognizedCharacterSequenceException
+    {
+        // the escape character only keeps delimiters from ending the literal.
+        // Its value is unescaped with the Java rules all the same.
+        BasicTokenizer<TestToken> lTokenizer =
+                new BasicTokenizer.Builder<TestToken>()
+                        .recognize(() -> new StringLiteralRecognizer<>('%',
+                                '\"', new char[] {'\"', '%'}, TestToken.STRING))
+                        .endOfFile(TestToken.EOF)
+                        .build("\"a%\"b\\tc%%\"");
+        test(lTokenizer.nextToken(), TestToken.STRING, "\"a%\"b\\tc%%\"",
+                "a%\"b\tc%%", String.class);
+        assertEquals(TestToken.EOF, lTokenizer.nextToken().getId());
+    }
+
+    @Test
+    public void testStreamingStringsUnescapeLikeStrings()
+            throws IOException, UnrecognizedCharacterSequenceException
+    {
+        for (char lEscape : new char[] {'\\', '%'})
+        {
+            char[] lSequences = {'n', 't', 'r', 'b', 'f', '\"', '\'', 'u',
+                    '0', '1', '2', '3', '4', '5', '6', '7', lEscape};
+            StringBuilder lInput = new StringBuilder("\"a");
+            for (char lSequence : lSequences)
+            {
+                if (lSequence != 'u')
+                {
+                    lInput.append(lEscape).append(lSequence).append('.');
+                }
+            }
+            // unicode and octal escapes are unescaped whatever the escape
+            // character
+            lInput.append("\\u00e9\\uu0041\\u+0041x\\123\\47\\0\\400\\7x\\3777")
+                    .append(lEscape == '%' ? "\\" : "").append('\"');
+
+            Token<TestToken, ?> lToken = new BasicTokenizer.Builder<TestToken>()
+                    .recognize(() -> new StringLiteralRecognizer<>(lEscape,
+                            '\"', lSequences.clone(), TestToken.STRING))
+                    .endOfFile(TestToken.EOF)
+                    .build(lInput.toString())
+                    .nextToken();
+            for (long lThreshold : new long[] {5, 1000})
+            {
+                Token<TestToken, ?> lStreamed =
+                        new BasicTokenizer.Builder<TestToken>()
+                        .recognize(() -> new StreamingStringLiteralRecognizer<>(
+                                lEscape, '\"', lSequences.clone(),
+                                TestToken.STRING, lThreshold))
+                        .endOfFile(TestToken.EOF)
+                        .build(lInput.toString())
+                        .nextToken();
+                try (SpooledString lValue =
+                             (SpooledString) lStreamed.getValue())
+                {
+                    assertEquals(lToken.getValue(), lValue.toString());
+                }
+            }
+        }
+
+        BasicTokenizer<TestToken> lTokenizer =
+                new BasicTokenizer.Builder<TestToken>()
+                        .recognize(() -> new StreamingStringLiteralRecognizer<>(
+                                '\\', '\"', new char[] {'u'},
+                                TestToken.STRING, 1000))
+                        .endOfFile(TestToken.EOF)
+                        .build("\"\\u00\"");
+        try
+        {
+            lTokenizer.nextToken();
+            fail();
+        }
+        catch (UnrecognizedCharacterSequenceException e)
+        {
+            assertEquals("Not a valid unicode escape sequence", e.getDetail());
+        }
+    }
+
+    @Test
+    public void testDispatch()
+            throws IOException, UnrecognizedCharacterSequenceException
+    {
+        String lInput = "if (a == 'b') for x = 12.3f \"\u00e9\" /* c */ \u00e91 [";
+        List<Token<TestToken, ?>> lExpected = new ArrayList<>();
+        BasicTokenizer<TestToken> lTokenizer =
+                builder.errorToken(TestToken.ERROR).build(lInput);
+        lTokenizer.forEach(lExpected::add);
+
+        lTokenizer = builder.dispatch(true).build(lInput);
+        for (Token<TestToken, ?> lToken : lExpected)
+        {
+            Token<TestToken, ?> lActual = lTokenizer.nextToken();
+            assertEquals(lToken.getId(), lActual.getId());
+            assertEquals(lToken.getCharSequence(), lActual.getCharSequence());
+            assertEquals(lToken.getValue(), lActual.getValue());
+        }
+    }
+
+    @Test
+    public void testRuns()
+            throws IOException, UnrecognizedCharacterSequenceException
+    {
+        // runs of characters consumed in bulk, across read buffer boundaries
+        String lIdentifier = "a" + StringUtils.repeat("b1_", 40);
+        String lString = StringUtils.repeat("x", 100) + "\\n"
+                + StringUtils.repeat("y", 50);
+        String lInput = lIdentifier + "   \n\t 1234567890 0x1234abcdef"
+                + "ABCDEL 12345.678901f \"" + lString + "\" /*"
+                + StringUtils.repeat(" * ", 30) + "*/ // "
+                + StringUtils.repeat("c", 70) + "\n"
+                + lIdentifier + "\u00e9\u00e9x";
+
+        for (BasicTokenizer<TestToken> lTokenizer : Arrays.asList(
+                builder.build(lInput),
+                builder.build(lInput.toCharArray(), 0, lInput.length()),
+                builder.readBufferSize(7).build(new StringReader(lInput)),
+                builder.build(new StringBuilder(lInput))))
+        {
+            test(lTokenizer.nextToken(), TestToken.IDENTIFIER, lIdentifier,
+                    lIdentifier, String.class);
+            test(lTokenizer.nextToken(), TestToken.NUMBER, "1234567890",
+                    1234567890, Integer.class);
+            test(lTokenizer.nextToken(), TestToken.NUMBER,
+                    "0x1234abcdefABCDEL", 0x1234abcdefABCDEL, Long.class);
+            test(lTokenizer.nextToken(), TestToken.NUMBER, "12345.678901f",
+                    12345.678901f, Float.class);
+            test(lTokenizer.nextToken(), TestToken.STRING,
+                    '"' + lString + '"',
+                    lString.replace("\\n", "\n"), String.class);
+            test(lTokenizer.nextToken(), TestToken.IDENTIFIER,
+                    lIdentifier + "\u00e9\u00e9x",
+                    lIdentifier + "\u00e9\u00e9x", String.class);
+            assertEquals(TestToken.EOF, lTokenizer.nextToken().getId());
+        }
+    }
+
+    @Test
+    public void testRunsInString()
+            throws IOException, UnrecognizedCharacterSequenceException
+    {
+        int[] lScanned = {0};
+        BasicTokenizer<TestToken> lTokenizer =
+                new BasicTokenizer.Builder<TestToken>()
+                        .recognize(whiteSpaces())
+                        .recognize(() -> new IdentifierRecognizer<TestToken>(
+                                TestToken.IDENTIFIER)
+                        {
+                            @Override
+                            public int scan(
+                                    char[] aInChars, int aInStart, int aInEnd)
+                            {
+                                int lRun = super.scan(
+                                        aInChars, aInStart, aInEnd);
+                                lScanned[0] += lRun;
+                                return lRun;
+                            }
+                        })
+                        .endOfFile(TestToken.EOF)
+                        .readBufferSize(16)
+                        .build("abcdefghijklmnopqrstuvwxyz x0123456789");
+
+        test(lTokenizer.nextToken(), TestToken.IDENTIFIER,
+                "abcdefghijklmnopqrstuvwxyz", "abcdefghijklmnopqrstuvwxyz",
+                String.class);
+        test(lTokenizer.nextToken(), TestToken.IDENTIFIER, "x0123456789",
+                "x0123456789", String.class);
+        assertEquals(TestToken.EOF, lTokenizer.nextToken().getId());
+        // all but the first character of each identifier and a few where the
+        // sequence is copied to the window again
+        assertTrue(lScanned[0] > 30);
+    }
+
+    private void assertTrivia(Token<TestToken, ?> aInToken, int... aInTrivia)
+    {
+        assertEquals(aInTrivia.length / 3, aInToken.getTriviaCount());
+        for (int i = 0; i < aInToken.getTriviaCount(); i++)
+        {
+            assertEquals(aInTrivia[i * 3], aInToken.getTriviaKind(i));
+            assertEquals(aInTrivia[i * 3 + 1], aInToken.getTriviaStart(i));
+            assertEquals(aInTrivia[i * 3 + 2], aInToken.getTriviaLength(i));
+        }
+    }
+}
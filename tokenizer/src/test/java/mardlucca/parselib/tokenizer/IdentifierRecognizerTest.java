@@ -36,12 +36,43 @@ public class IdentifierRecognizerTest
         test("1a", MatchResult.NOT_A_MATCH, MatchResult.NOT_A_MATCH);
     }
 
+    @Test
+    public void testCharClasses()
+    {
+        // e.g. lisp-like identifiers
+        IdentifierRecognizer<String> lRecognizer = new IdentifierRecognizer<>(
+                "ID",
+                CharClass.range('a', 'z').or(CharClass.chars("*+!-_?\u00e9")),
+                CharClass.range('a', 'z').or(CharClass.range('0', '9'))
+                        .or(CharClass.chars("*+!-_?\u00e9")));
+        test(lRecognizer, "a-b?1 ", MatchResult.MATCH, MatchResult.MATCH,
+                MatchResult.MATCH, MatchResult.MATCH, MatchResult.MATCH,
+                MatchResult.NOT_A_MATCH);
+        test(lRecognizer, "\u00e9A", MatchResult.MATCH,
+                MatchResult.NOT_A_MATCH);
+        test(lRecognizer, "1a", MatchResult.NOT_A_MATCH,
+                MatchResult.NOT_A_MATCH);
+
+        char[] lChars = "a-b\u00e91 c".toCharArray();
+        lRecognizer.reset();
+        lRecognizer.test(lChars[0]);
+        assertEquals(4, lRecognizer.scan(lChars, 1, lChars.length));
+        assertEquals(0, lRecognizer.scan(lChars, 5, lChars.length));
+    }
+
     private void test(String aInString, MatchResult ... aInResults)
     {
-        recognizer.reset();
+        test(recognizer, aInString, aInResults);
+    }
+
+    private void test(IdentifierRecognizer<?> aInRecognizer, String aInString,
+                      MatchResult ... aInResults)
+    {
+        aInRecognizer.reset();
         for (int i = 0; i < aInString.length(); i++)
         {
-            assertEquals(aInResults[i], recognizer.test(aInString.charAt(i)));
+            assertEquals(aInResults[i],
+                    aInRecognizer.test(aInString.charAt(i)));
         }
     }
 }
\ No newline at end of file
@@ -32,6 +32,9 @@ public class MultiLineCommentRecognizerTest
     private static MultiLineCommentRecognizer recognizer =
             new MultiLineCommentRecognizer(null, null);
 
+    private static MultiLineCommentRecognizer nestedRecognizer =
+            new MultiLineCommentRecognizer(null, null, true);
+
     @Test
     public void testSuccessCases()
     {
@@ -50,6 +53,47 @@ public class MultiLineCommentRecognizerTest
                 PARTIAL_MATCH, PARTIAL_MATCH, MATCH, NOT_A_MATCH);
     }
 
+    @Test
+    public void testCustomDelimiters()
+    {
+        MultiLineCommentRecognizer lRecognizer =
+                new MultiLineCommentRecognizer("<!--", "-->");
+        test(lRecognizer, "<!--a--->b", PARTIAL_MATCH, PARTIAL_MATCH,
+                PARTIAL_MATCH, PARTIAL_MATCH, PARTIAL_MATCH, PARTIAL_MATCH,
+                PARTIAL_MATCH, PARTIAL_MATCH, MATCH, NOT_A_MATCH);
+
+        // partial matches of the end sequence that overlap with the real end
+        lRecognizer = new MultiLineCommentRecognizer("{", "aab");
+        test(lRecognizer, "{aaab}", PARTIAL_MATCH, PARTIAL_MATCH,
+                PARTIAL_MATCH, PARTIAL_MATCH, MATCH, NOT_A_MATCH);
+        test(lRecognizer, "{abaab}", PARTIAL_MATCH, PARTIAL_MATCH,
+                PARTIAL_MATCH, PARTIAL_MATCH, PARTIAL_MATCH, MATCH,
+                NOT_A_MATCH);
+    }
+
+    @Test
+    public void testNestedComments()
+    {
+        test(nestedRecognizer, "/*/**/*/a", PARTIAL_MATCH, PARTIAL_MATCH,
+                PARTIAL_MATCH, PARTIAL_MATCH, PARTIAL_MATCH, PARTIAL_MATCH,
+                PARTIAL_MATCH, MATCH, NOT_A_MATCH);
+        test(nestedRecognizer, "/**/a", PARTIAL_MATCH, PARTIAL_MATCH,
+                PARTIAL_MATCH, MATCH, NOT_A_MATCH);
+        test(nestedRecognizer, "/*a/*b/**/*/c*/", PARTIAL_MATCH,
+                PARTIAL_MATCH, PARTIAL_MATCH, PARTIAL_MATCH, PARTIAL_MATCH,
+                PARTIAL_MATCH, PARTIAL_MATCH, PARTIAL_MATCH, PARTIAL_MATCH,
+                PARTIAL_MATCH, PARTIAL_MATCH, PARTIAL_MATCH, PARTIAL_MATCH,
+                PARTIAL_MATCH, MATCH);
+
+        nestedRecognizer.reset();
+        for (char lChar : "/*/**/".toCharArray())
+        {
+            assertEquals(PARTIAL_MATCH, nestedRecognizer.test(lChar));
+        }
+        assertEquals(FAILURE, nestedRecognizer.test(-1));
+        assertEquals("Unclosed comment", nestedRecognizer.getFailureReason());
+    }
+
     @Test
     public void testFailureCases()
     {
@@ -73,11 +117,20 @@ public class MultiLineCommentRecognizerTest
 
     private void test(String aInString, MatchResult ... aInResults)
     {
-        recognizer.reset();
+        test(recognizer, aInString, aInResults);
+    }
+
+    private void test(
+            MultiLineCommentRecognizer aInRecognizer,
+            String aInString,
+            MatchResult ... aInResults)
+    {
+        aInRecognizer.reset();
         assertEquals(aInResults.length, aInString.length());
         for (int i = 0; i < aInString.length(); i++)
         {
-            assertEquals(aInResults[i], recognizer.test(aInString.charAt(i)));
+            assertEquals(aInResults[i],
+                    aInRecognizer.test(aInString.charAt(i)));
         }
     }
 
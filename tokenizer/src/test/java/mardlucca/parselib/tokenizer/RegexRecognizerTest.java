@@ -0,0 +1,178 @@
+/*
+ * File: RegexRecognizerTest.java
+ *
+ * Copyright 2020 Marcio D. Lucca
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package mardlucca.parselib.tokenizer;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import static mardlucca.parselib.tokenizer.Recognizers.*;
+import static org.junit.Assert.*;
+
+public class RegexRecognizerTest
+{
+    @Test
+    public void testSuccess()
+    {
+        RegexRecognizer<String> lRecognizer =
+                new RegexRecognizer<>("[a-c]+\\d?|x(yz)*", "ID");
+        test(lRecognizer, "ab1c", MatchResult.MATCH, MatchResult.MATCH,
+                MatchResult.MATCH, MatchResult.NOT_A_MATCH);
+        test(lRecognizer, "xyzy ", MatchResult.MATCH,
+                MatchResult.PARTIAL_MATCH, MatchResult.MATCH,
+                MatchResult.PARTIAL_MATCH, MatchResult.NOT_A_MATCH);
+        test(lRecognizer, "1", MatchResult.NOT_A_MATCH);
+    }
+
+    @Test
+    public void testMinimal()
+    {
+        // the textbook example
+        assertEquals(4, RegexAutomaton.compile("(a|b)*abb").states());
+        assertEquals(1, RegexAutomaton.compile("a+|a*").states());
+    }
+
+    @Test
+    public void testSameAsPattern()
+    {
+        String[] lPatterns = {
+                "[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}",
+                "\\d{4}-\\d{2}-\\d{2}(T\\d{2}:\\d{2}(:\\d{2})?)?",
+                "(?:(25[0-5]|2[0-4]\\d|1?\\d?\\d)\\.){3}"
+                        + "(25[0-5]|2[0-4]\\d|1?\\d?\\d)",
+                "P(\\d+D)?(T(\\d+H)?(\\d+M)?)?",
+                "[^\\s\\]a-]+[-]?",
+                "\\w*\\.?\\W|[.]{1,3}",
+                "(a|b|)*c{0,2}|\\u0041",
+                "a.*b"
+        };
+        String lAlphabet = "0123456789abcdefPTDHM-:.\\] \tAc"
+                + "\n\r\u0085\u2028\u2029";
+        Random lRandom = new Random(42);
+        for (String lPattern : lPatterns)
+        {
+            RegexAutomaton lAutomaton = RegexAutomaton.compile(lPattern);
+            Pattern lExpected = Pattern.compile(lPattern);
+            for (int i = 0; i < 2000; i++)
+            {
+                StringBuilder lInput = new StringBuilder();
+                int lLength = lRandom.nextInt(20);
+                for (int j = 0; j < lLength; j++)
+                {
+                    lInput.append(lAlphabet.charAt(
+                            lRandom.nextInt(lAlphabet.length())));
+                }
+                assertEquals(lPattern + " on " + lInput,
+                        lExpected.matcher(lInput).matches(),
+                        matches(lAutomaton, lInput));
+            }
+        }
+        assertTrue(matches(RegexAutomaton.compile(lPatterns[0]),
+                "123e4567-e89b-12d3-a456-426614174000"));
+        assertTrue(matches(RegexAutomaton.compile(lPatterns[1]),
+                "2020-05-17T10:20:30"));
+        assertTrue(matches(RegexAutomaton.compile(lPatterns[2]),
+                "192.168.0.255"));
+        assertFalse(matches(RegexAutomaton.compile(lPatterns[2]),
+                "192.168.0.256"));
+    }
+
+    @Test
+    public void testUnsupported()
+    {
+        for (String lPattern : new String[] {"(a)\\1", "^a", "a*?", "(a",
+                "a)", "[a", "*", "a{3,2}", "\\b", "(?=a)", "a{2}?", "a{1,}+",
+                "(a|b)*a(a|b){20}"})
+        {
+            try
+            {
+                RegexAutomaton.compile(lPattern);
+                fail(lPattern);
+            }
+            catch (IllegalArgumentException e)
+            {
+                assertTrue(e.getMessage().endsWith(lPattern));
+            }
+        }
+    }
+
+    @Test
+    public void testTokenizer()
+            throws Exception
+    {
+        BasicTokenizer<String> lTokenizer = new BasicTokenizer.Builder<String>()
+                .recognize(whiteSpaces())
+                .recognize(regex("\\d{4}-\\d{2}-\\d{2}", "DATE"))
+                .recognize(regex("\\d+", "NUMBER"))
+                .recognize(regex("[a-z][a-z0-9]*", "NAME"))
+                .endOfFile("EOF")
+                .dispatch(true)
+                .build("2020-05-17 2020 abc1 2020-05");
+
+        assertToken(lTokenizer.nextToken(), "DATE", "2020-05-17");
+        assertToken(lTokenizer.nextToken(), "NUMBER", "2020");
+        assertToken(lTokenizer.nextToken(), "NAME", "abc1");
+        // the longest match is taken, even if a longer partial match fails
+        assertToken(lTokenizer.nextToken(), "NUMBER", "2020");
+        try
+        {
+            lTokenizer.nextToken();
+            fail();
+        }
+        catch (UnrecognizedCharacterSequenceException e)
+        {
+            assertTrue(e.getMessage().endsWith(": -"));
+        }
+    }
+
+    private static void assertToken(
+            Token<String, ?> aInToken, String aInId, String aInText)
+    {
+        assertEquals(aInId, aInToken.getId());
+        assertEquals(aInText, aInToken.getCharSequence());
+        assertEquals(aInText, aInToken.getValue());
+    }
+
+    private static boolean matches(
+            RegexAutomaton aInAutomaton, CharSequence aInInput)
+    {
+        int lState = aInAutomaton.start();
+        for (int i = 0; i < aInInput.length(); i++)
+        {
+            lState = aInAutomaton.next(lState, aInInput.charAt(i));
+            if (lState == RegexAutomaton.DEAD)
+            {
+                return false;
+            }
+        }
+        return aInAutomaton.isAccepting(lState);
+    }
+
+    private void test(RegexRecognizer<?> aInRecognizer, String aInString,
+                      MatchResult ... aInResults)
+    {
+        aInRecognizer.reset();
+        for (int i = 0; i < aInString.length(); i++)
+        {
+            assertEquals(aInResults[i],
+                    aInRecognizer.test(aInString.charAt(i)));
+        }
+    }
+}
@@ -25,6 +25,7 @@ public enum TestToken
     CLOSE_PARENTHESIS(")"),
     EOF("$"),
     EQUALS("=="),
+    ERROR("error"),
     FOR("for"),
     IDENTIFIER("id"),
     IF("if"),